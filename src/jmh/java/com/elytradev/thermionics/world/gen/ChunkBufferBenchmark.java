@@ -0,0 +1,102 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.ChunkPrimer;
+
+/**
+ * Shaping a chunk into a fresh ChunkPrimer each time, against pooled primers and pooled PalettedChunks. The time is
+ * much the same for all three; what differs is the heap churn, which shows up as gc.alloc.rate.norm (bytes allocated
+ * per chunk) under the gc profiler that "gradlew jmh" always runs with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkBufferBenchmark {
+	private TerrainShaper shaper;
+	private ResettingPool<ChunkPrimer> primers;
+	private ResettingPool<PalettedChunk> palettedChunks;
+	private int chunk = 0;
+	
+	@Setup
+	public void setup() {
+		ShapeBenchmark.registerStandIns();
+		long seed = 1234L;
+		shaper = new TerrainShaper(seed, new BiomeProviderNeo(seed), NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX), Blocks.LAVA.getDefaultState());
+		primers = ResettingPool.ofPrimers(1);
+		palettedChunks = new ResettingPool<>(PalettedChunk::new, PalettedChunk::clear, 1);
+	}
+	
+	private int nextChunkX() {
+		chunk = (chunk+1) & 1023;
+		return (chunk & 31) - 16;
+	}
+	
+	private int chunkZ() {
+		return (chunk >> 5) - 16;
+	}
+	
+	@Benchmark
+	public ChunkPrimer freshPrimer() {
+		ChunkPrimer primer = new ChunkPrimer();
+		shaper.generateShape(nextChunkX(), chunkZ(), primer);
+		return primer;
+	}
+	
+	@Benchmark
+	public ChunkPrimer pooledPrimer() {
+		ChunkPrimer primer = primers.acquire();
+		shaper.generateShape(nextChunkX(), chunkZ(), primer);
+		primers.release(primer);
+		return primer;
+	}
+	
+	@Benchmark
+	public int pooledPaletted() {
+		PalettedChunk paletted = palettedChunks.acquire();
+		shaper.generateShape(nextChunkX(), chunkZ(), paletted, null);
+		int bytes = paletted.getStorageBytes();
+		palettedChunks.release(paletted);
+		return bytes;
+	}
+}
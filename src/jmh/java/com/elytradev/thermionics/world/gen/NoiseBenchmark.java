@@ -0,0 +1,139 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Costs of the noise primitives, measured a chunk at a time so they line up with what generateShape asks for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoiseBenchmark {
+	@Param({"LEGACY", "SPLITMIX"})
+	public LatticeHash latticeHash;
+	
+	private ScaledNoiseField field;
+	private ScaledNoiseVolume volume;
+	private final float[] columnGrid = new float[16*16];
+	private final float[] chunkVolume = new float[16*16*TerrainShaper.SHAPE_HEIGHT];
+	
+	/** Walks a 32x32 chunk area straddling the origin, so negative coordinates get measured too */
+	private int chunk = 0;
+	
+	@Setup
+	public void setup() {
+		field = new ScaledNoiseField(1234L, 64f, latticeHash);
+		volume = new ScaledNoiseVolume(5678L, 40f, latticeHash);
+	}
+	
+	private int nextChunkX() {
+		chunk = (chunk+1) & 1023;
+		return (chunk & 31) - 16;
+	}
+	
+	private int chunkZ() {
+		return (chunk >> 5) - 16;
+	}
+	
+	@Benchmark
+	public void fieldGet(Blackhole blackhole) {
+		int chunkX = nextChunkX(); int chunkZ = chunkZ();
+		for(int z=0; z<16; z++) {
+			for(int x=0; x<16; x++) {
+				blackhole.consume(field.get(chunkX*16+x, chunkZ*16+z));
+			}
+		}
+	}
+	
+	@Benchmark
+	public void fieldGetFiltered(Blackhole blackhole) {
+		int chunkX = nextChunkX(); int chunkZ = chunkZ();
+		for(int z=0; z<16; z++) {
+			for(int x=0; x<16; x++) {
+				blackhole.consume(field.getFiltered(chunkX*16+x, chunkZ*16+z));
+			}
+		}
+	}
+	
+	@Benchmark
+	public float[] fieldFillFiltered() {
+		field.fillFiltered(columnGrid, nextChunkX()*16, chunkZ()*16, 16, 16);
+		return columnGrid;
+	}
+	
+	@Benchmark
+	public float[] fieldFillFilteredFast() {
+		field.fillFilteredFast(columnGrid, nextChunkX()*16, chunkZ()*16, 16, 16);
+		return columnGrid;
+	}
+	
+	@Benchmark
+	public void volumeGet(Blackhole blackhole) {
+		int chunkX = nextChunkX(); int chunkZ = chunkZ();
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<TerrainShaper.SHAPE_HEIGHT; y++) {
+					blackhole.consume(volume.get(chunkX*16+x, y, chunkZ*16+z));
+				}
+			}
+		}
+	}
+	
+	@Benchmark
+	public void volumeSampler(Blackhole blackhole) {
+		int chunkX = nextChunkX(); int chunkZ = chunkZ();
+		ScaledNoiseVolume.Sampler sampler = volume.sampler();
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<TerrainShaper.SHAPE_HEIGHT; y++) {
+					blackhole.consume(sampler.get(chunkX*16+x, y, chunkZ*16+z));
+				}
+			}
+		}
+	}
+	
+	@Benchmark
+	public float[] volumeFill() {
+		volume.fill(chunkVolume, nextChunkX()*16, 0, chunkZ()*16, 16, TerrainShaper.SHAPE_HEIGHT, 16);
+		return chunkVolume;
+	}
+}
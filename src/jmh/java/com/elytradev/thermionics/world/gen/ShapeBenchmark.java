@@ -0,0 +1,119 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+import com.elytradev.thermionics.world.gen.biome.BiomeRegistry;
+import com.elytradev.thermionics.world.gen.biome.NeoBiome;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.ChunkPrimer;
+
+/**
+ * A full generateShape into a ChunkPrimer. Only vanilla's Bootstrap is needed; the biomes are stand-ins built from
+ * vanilla blocks, with the same heights, densities and climate parameters as the real ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShapeBenchmark {
+	@Param({"0", "1"})
+	public int generatorVersion;
+	
+	@Param({"false", "true"})
+	public boolean fastMath;
+	
+	private TerrainShaper shaper;
+	private ChunkPrimer primer;
+	private int chunk = 0;
+	
+	@Setup
+	public void setup() {
+		registerStandIns();
+		
+		long seed = 1234L;
+		NeoHellGeneratorSettings settings = NeoHellGeneratorSettings.of(generatorVersion).withFastMath(fastMath);
+		shaper = new TerrainShaper(seed, new BiomeProviderNeo(seed), settings, Blocks.LAVA.getDefaultState());
+		primer = new ChunkPrimer();
+	}
+	
+	/**
+	 * Bootstraps vanilla and registers the stand-in biomes, if nothing has yet.
+	 */
+	static synchronized void registerStandIns() {
+		Bootstrap.register();
+		if (BiomeRegistry.NEO_HELL.getKeys().isEmpty()) {
+			standIn(0, "bridges",   0.25f,  0.25f, Blocks.NETHERRACK,  Blocks.SOUL_SAND);
+			standIn(1, "strata",    0.375f, 0.25f, Blocks.QUARTZ_BLOCK,Blocks.NETHERRACK);
+			standIn(2, "cold",      0.625f, 0.25f, Blocks.SNOW,        Blocks.PACKED_ICE);
+			standIn(3, "barad_dur", 0.75f,  0.25f, Blocks.OBSIDIAN,    Blocks.NETHERRACK);
+			standIn(4, "heartsblood",0.25f, 0.5f,  Blocks.RED_NETHER_BRICK, Blocks.NETHER_WART_BLOCK);
+			standIn(5, "sulfur",    0.375f, 0.5f,  Blocks.GLOWSTONE,   Blocks.END_STONE);
+			standIn(6, "nocturne",  0.625f, 0.5f,  Blocks.COAL_BLOCK,  Blocks.COAL_BLOCK);
+			standIn(7, "doom",      0.75f,  0.5f,  Blocks.MAGMA,       Blocks.NETHERRACK);
+		}
+	}
+	
+	private static void standIn(int id, String name, float temperature, float rainfall, Block surface, Block core) {
+		BiomeRegistry.NEO_HELL.register(id,
+			new NeoBiome(name, new Biome.BiomeProperties(name)
+				.setBaseHeight(128f)
+				.setTemperature(temperature)
+				.setRainfall(rainfall)
+			)
+			.withSurfaceMaterial(surface)
+			.withTerrainFillMaterial(Blocks.NETHERRACK)
+			.withDensitySurfaceMaterial(surface)
+			.withDensityCoreMaterial(core)
+			);
+	}
+	
+	@Benchmark
+	public ChunkPrimer generateShape() {
+		//Walk a 32x32 chunk area straddling the origin, so negative coordinates get measured too
+		chunk = (chunk+1) & 1023;
+		shaper.generateShape((chunk & 31) - 16, (chunk >> 5) - 16, primer);
+		return primer;
+	}
+}
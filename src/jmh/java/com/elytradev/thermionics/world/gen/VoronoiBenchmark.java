@@ -0,0 +1,87 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of resolving one chunk's worth of biome cells, using the same cell size and parameters as the built-in
+ * Neo-Hell biomes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VoronoiBenchmark {
+	private VoronoiClusterField<Integer> field;
+	private Integer[] cells = new Integer[16*16];
+	private int chunk = 0;
+	
+	@Setup
+	public void setup() {
+		field = new VoronoiClusterField<Integer>(1234L, 16*9);
+		float[][] parameters = {
+				{0.25f, 0.25f}, {0.375f, 0.25f}, {0.625f, 0.25f}, {0.75f, 0.25f},
+				{0.25f, 0.5f }, {0.375f, 0.5f }, {0.625f, 0.5f }, {0.75f, 0.5f }
+		};
+		for(int i=0; i<parameters.length; i++) {
+			field.registerCell(i, parameters[i][0], parameters[i][1]);
+		}
+	}
+	
+	@Benchmark
+	public void get(Blackhole blackhole) {
+		chunk = (chunk+1) & 1023;
+		int chunkX = (chunk & 31) - 16;
+		int chunkZ = (chunk >> 5) - 16;
+		for(int z=0; z<16; z++) {
+			for(int x=0; x<16; x++) {
+				blackhole.consume(field.get(chunkX*16+x, chunkZ*16+z));
+			}
+		}
+	}
+	
+	@Benchmark
+	public Integer[] fill() {
+		chunk = (chunk+1) & 1023;
+		int chunkX = (chunk & 31) - 16;
+		int chunkZ = (chunk >> 5) - 16;
+		field.fill(cells, chunkX*16, chunkZ*16, 16, 16);
+		return cells;
+	}
+}
@@ -62,6 +62,11 @@ public class Benchmark {
 		return elapsed;
 	}
 	
+	public long getSectionTime(String sectionName) {
+		Long result = savedTimes.get(sectionName);
+		return (result==null) ? 0L : result;
+	}
+	
 	public void printDebug() {
 		StringBuilder result = new StringBuilder();
 		result.append("TOTAL: ");
@@ -0,0 +1,323 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nullable;
+
+import com.elytradev.thermionics.world.gen.ChunkProviderNeo;
+import com.elytradev.thermionics.world.gen.NeoHellGeneratorSettings;
+import com.elytradev.thermionics.world.gen.PalettedChunk;
+import com.elytradev.thermionics.world.gen.Pregenerator;
+import com.elytradev.thermionics.world.gen.ResettingPool;
+import com.elytradev.thermionics.world.gen.ShapePipeline;
+import com.elytradev.thermionics.world.gen.TerrainQuality;
+import com.elytradev.thermionics.world.gen.TerrainShaper;
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+import com.elytradev.thermionics.world.gen.biome.BiomeRegistry;
+import com.elytradev.thermionics.world.gen.biome.NeoBiome;
+
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.CommandException;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.command.WrongUsageException;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.gen.IChunkGenerator;
+
+/**
+ * Admin tools for Neo-Hell. Apart from pregen, everything in here leaves the world itself alone.
+ */
+public class CommandNeoHell extends CommandBase {
+	
+	@Override
+	public String getName() {
+		return "neohell";
+	}
+	
+	@Override
+	public String getUsage(ICommandSender sender) {
+		return "/neohell <bench [chunks] | biomecache | pipeline | locate <biome> [radius] | pregen <radius> [msPerTick] | pregen <stop|status>>";
+	}
+	
+	@Override
+	public int getRequiredPermissionLevel() {
+		return 2;
+	}
+	
+	@Override
+	public void execute(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+		if (args.length<1) throw new WrongUsageException(getUsage(sender));
+		
+		switch(args[0]) {
+		case "bench":
+			bench(server, sender, args);
+			break;
+		case "biomecache":
+			biomeCache(server, sender);
+			break;
+		case "pipeline":
+			pipeline(server, sender);
+			break;
+		case "locate":
+			locate(server, sender, args);
+			break;
+		case "pregen":
+			pregen(server, sender, args);
+			break;
+		default:
+			throw new WrongUsageException(getUsage(sender));
+		}
+	}
+	
+	@Override
+	public List<String> getTabCompletions(MinecraftServer server, ICommandSender sender, String[] args, @Nullable BlockPos targetPos) {
+		if (args.length==1) return getListOfStringsMatchingLastWord(args, "bench", "biomecache", "pipeline", "locate", "pregen");
+		if (args.length==2 && args[0].equals("pregen")) return getListOfStringsMatchingLastWord(args, "stop", "status");
+		if (args.length==2 && args[0].equals("locate")) return getListOfStringsMatchingLastWord(args, BiomeRegistry.NEO_HELL.getKeys());
+		return Collections.emptyList();
+	}
+	
+	public static ChunkProviderNeo getGenerator(MinecraftServer server) throws CommandException {
+		WorldServer world = server.getWorld(ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL);
+		IChunkGenerator generator = world.getChunkProvider().chunkGenerator;
+		if (!(generator instanceof ChunkProviderNeo)) throw new CommandException("Neo-Hell isn't being generated by Thermionics|World on this server.");
+		return (ChunkProviderNeo)generator;
+	}
+	
+	public static BiomeProviderNeo getBiomeProvider(MinecraftServer server) throws CommandException {
+		WorldServer world = server.getWorld(ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL);
+		if (!(world.getBiomeProvider() instanceof BiomeProviderNeo)) throw new CommandException("Neo-Hell biomes aren't provided by Thermionics|World on this server.");
+		return (BiomeProviderNeo)world.getBiomeProvider();
+	}
+	
+	private static void reply(MinecraftServer server, ICommandSender sender, String message) {
+		server.addScheduledTask(()->sender.sendMessage(new TextComponentString(message)));
+	}
+	
+	/**
+	 * Times terrain shaping for this world's seed with and without fast math, and at coarse quality, then measures how
+	 * much heap shaping churns through with fresh primers, pooled primers and pooled paletted chunks, and how long one
+	 * chunk takes with and without spare cores helping. Nothing is saved.
+	 */
+	private void bench(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+		int chunks = (args.length>1) ? parseInt(args[1], 1, 4096) : 256;
+		ChunkProviderNeo generator = getGenerator(server);
+		WorldServer world = server.getWorld(ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL);
+		int version = generator.getSettings().getVersion();
+		TerrainShaper exact = new TerrainShaper(world.getSeed(), world.getBiomeProvider(), NeoHellGeneratorSettings.of(version));
+		TerrainShaper fast = new TerrainShaper(world.getSeed(), world.getBiomeProvider(), NeoHellGeneratorSettings.of(version).withFastMath(true));
+		TerrainShaper coarse = new TerrainShaper(world.getSeed(), world.getBiomeProvider(), NeoHellGeneratorSettings.of(version).withTerrainQuality(TerrainQuality.COARSE));
+		
+		sender.sendMessage(new TextComponentString("Shaping "+chunks+" chunks with and without fast math, and at coarse quality..."));
+		Thread benchThread = new Thread(()->{
+			ChunkPrimer primer = new ChunkPrimer();
+			//Warm up both paths so the JIT isn't part of the measurement
+			for(int i=0; i<16; i++) {
+				exact.generateShape(i, 0, primer);
+				fast.generateShape(i, 0, primer);
+				coarse.generateShape(i, 0, primer);
+			}
+			
+			Benchmark bench = new Benchmark();
+			bench.startFrame();
+			for(int i=0; i<chunks; i++) exact.generateShape(i, 1, primer);
+			bench.endSection("exact");
+			for(int i=0; i<chunks; i++) fast.generateShape(i, 1, primer);
+			bench.endSection("fast");
+			for(int i=0; i<chunks; i++) coarse.generateShape(i, 1, primer);
+			bench.endSection("coarse");
+			bench.endFrame();
+			
+			float exactPerChunk = bench.getSectionTime("exact") / (float)chunks;
+			float fastPerChunk = bench.getSectionTime("fast") / (float)chunks;
+			float coarsePerChunk = bench.getSectionTime("coarse") / (float)chunks;
+			reply(server, sender, String.format("exact: %.3f ms/chunk, fast math: %.3f ms/chunk, saving %.3f ms/chunk (current world: %s)",
+					exactPerChunk, fastPerChunk, exactPerChunk - fastPerChunk,
+					generator.getSettings().isFastMath() ? "fast math" : "exact"));
+			reply(server, sender, String.format("coarse quality: %.3f ms/chunk (current world: %s)",
+					coarsePerChunk, generator.getSettings().getTerrainQuality().name().toLowerCase(Locale.ROOT)));
+			
+			//Heap churn: a fresh primer per chunk, against pooled primers and pooled paletted chunks
+			long freshBytes = allocatedBytes();
+			for(int i=0; i<chunks; i++) exact.generateShape(i, 2, new ChunkPrimer());
+			freshBytes = allocatedBytes() - freshBytes;
+			
+			ResettingPool<ChunkPrimer> primers = ResettingPool.ofPrimers(1);
+			long pooledBytes = allocatedBytes();
+			for(int i=0; i<chunks; i++) {
+				ChunkPrimer pooled = primers.acquire();
+				exact.generateShape(i, 2, pooled);
+				primers.release(pooled);
+			}
+			pooledBytes = allocatedBytes() - pooledBytes;
+			
+			ResettingPool<PalettedChunk> palettedChunks = new ResettingPool<>(PalettedChunk::new, PalettedChunk::clear, 1);
+			long palettedBytes = allocatedBytes();
+			long heldBytes = 0;
+			for(int i=0; i<chunks; i++) {
+				PalettedChunk paletted = palettedChunks.acquire();
+				exact.generateShape(i, 2, paletted, null);
+				heldBytes += paletted.getStorageBytes();
+				palettedChunks.release(paletted);
+			}
+			palettedBytes = allocatedBytes() - palettedBytes;
+			
+			if (freshBytes>=0) {
+				reply(server, sender, String.format("allocated: %.1f KB/chunk with a new primer each time, %.1f KB/chunk pooled, %.1f KB/chunk pooled and paletted",
+						freshBytes/1024f/chunks, pooledBytes/1024f/chunks, palettedBytes/1024f/chunks));
+			}
+			reply(server, sender, String.format("a paletted chunk holds %.1f KB on average, against %d KB for a primer",
+					heldBytes/1024f/chunks, PalettedChunk.VOLUME*2/1024));
+			
+			//Latency of a chunk that's needed right away, shaped alone and with as many helpers as splitThreads could have
+			int helpers = Runtime.getRuntime().availableProcessors() - 1 - ThermionicsWorld.CONFIG_NEOHELL_SHAPE_THREADS;
+			if (helpers<1) {
+				reply(server, sender, "No cores are left over for splitThreads once the server thread and shapeThreads have theirs.");
+				return;
+			}
+			ForkJoinPool columnPool = TerrainShaper.createColumnPool(helpers);
+			long[] alone = new long[chunks];
+			long[] helped = new long[chunks];
+			for(int i=0; i<chunks; i++) {
+				long start = System.nanoTime();
+				exact.generateShape(i, 3, new ExtendedBlockStorage[16], false, null, null);
+				alone[i] = System.nanoTime() - start;
+				start = System.nanoTime();
+				exact.generateShape(i, 3, new ExtendedBlockStorage[16], false, null, columnPool);
+				helped[i] = System.nanoTime() - start;
+			}
+			columnPool.shutdown();
+			Arrays.sort(alone);
+			Arrays.sort(helped);
+			reply(server, sender, String.format("one chunk at a time: p50 %.3f ms, p99 %.3f ms alone; p50 %.3f ms, p99 %.3f ms with %d threads helping (splitThreads is %d)",
+					alone[chunks/2]/1_000_000f, alone[chunks*99/100]/1_000_000f,
+					helped[chunks/2]/1_000_000f, helped[chunks*99/100]/1_000_000f,
+					helpers, ThermionicsWorld.CONFIG_NEOHELL_SPLIT_THREADS));
+		}, "Neo-Hell benchmark");
+		benchThread.setDaemon(true);
+		benchThread.start();
+	}
+	
+	/**
+	 * Gets how many bytes the current thread has allocated so far, or -1 if this JVM can't say.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+		return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	private void biomeCache(MinecraftServer server, ICommandSender sender) throws CommandException {
+		BiomeProviderNeo biomes = getBiomeProvider(server);
+		
+		long hits = biomes.getCacheHits();
+		long misses = biomes.getCacheMisses();
+		long total = hits + misses;
+		sender.sendMessage(new TextComponentString(String.format("Biome cache: %d hits, %d misses (%.1f%% hit rate), %d of the missed chunks were all one biome",
+				hits, misses, (total==0) ? 0f : hits * 100f / total, biomes.getUniformTiles())));
+	}
+	
+	/**
+	 * Reports how many chunks the shape pipeline had ready when they were needed.
+	 */
+	private void pipeline(MinecraftServer server, ICommandSender sender) throws CommandException {
+		ShapePipeline pipeline = getGenerator(server).getPipeline();
+		if (pipeline==null) throw new CommandException("Neo-Hell terrain is all being shaped on the server thread (shapeThreads is 0).");
+		
+		long hits = pipeline.getHits();
+		long misses = pipeline.getMisses();
+		long total = hits + misses;
+		sender.sendMessage(new TextComponentString(String.format("Shape pipeline: %d chunks shaped ahead, %d shaped on the spot (%.1f%% ahead), %d dropped unused, %d waiting",
+				hits, misses, (total==0) ? 0f : hits * 100f / total, pipeline.getEvictions(), pipeline.getPendingCount())));
+	}
+	
+	/**
+	 * Finds the nearest spot in the named Neo-Hell biome to the sender, by Neo-Hell coordinates. Only whole voronoi
+	 * cells are searched, so this takes milliseconds rather than a flight around the dimension.
+	 */
+	private void locate(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+		if (args.length<2) throw new WrongUsageException(getUsage(sender));
+		NeoBiome biome = BiomeRegistry.NEO_HELL.getObject(args[1]);
+		if (biome==null) throw new CommandException("There's no Neo-Hell biome called \""+args[1]+"\". Try one of: "+BiomeRegistry.NEO_HELL.getKeys());
+		int radius = (args.length>2) ? parseInt(args[2], 1, 100000) : 10000;
+		BiomeProviderNeo biomes = getBiomeProvider(server);
+		
+		BlockPos origin = sender.getPosition();
+		long start = System.nanoTime();
+		BlockPos found = biomes.findNearestBiome(origin.getX(), origin.getZ(), radius, biome);
+		float millis = (System.nanoTime() - start) / 1_000_000f;
+		
+		if (found==null) {
+			sender.sendMessage(new TextComponentString(String.format("No %s within %d blocks (searched in %.1f ms)", biome.name(), radius, millis)));
+		} else {
+			int distance = (int)Math.sqrt(origin.distanceSq(found.getX(), origin.getY(), found.getZ()));
+			sender.sendMessage(new TextComponentString(String.format("Nearest %s is at %d, %d, %d blocks away (found in %.1f ms)",
+					biome.name(), found.getX(), found.getZ(), distance, millis)));
+		}
+	}
+	
+	/**
+	 * Generates, and populates, every chunk within the given radius of the sender, or of the origin if the sender isn't
+	 * in Neo-Hell. This runs a little each tick and carries on across restarts until it's done or stopped.
+	 */
+	private void pregen(MinecraftServer server, ICommandSender sender, String[] args) throws CommandException {
+		if (args.length<2) throw new WrongUsageException(getUsage(sender));
+		if (args[1].equals("stop")) {
+			boolean stopped = Pregenerator.stop(server);
+			sender.sendMessage(new TextComponentString(stopped ? "Neo-Hell pregen stopped." : "Neo-Hell pregen wasn't running."));
+			return;
+		}
+		if (args[1].equals("status")) {
+			String status = Pregenerator.getStatus();
+			sender.sendMessage(new TextComponentString((status==null) ? "Neo-Hell pregen isn't running." : "Neo-Hell pregen: "+status));
+			return;
+		}
+		
+		int radius = parseInt(args[1], 1, 4096);
+		int msPerTick = (args.length>2) ? parseInt(args[2], 1, 1000) : Pregenerator.DEFAULT_MS_PER_TICK;
+		getGenerator(server);
+		
+		BlockPos center = (sender.getEntityWorld().provider.getDimension()==ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL) ? sender.getPosition() : BlockPos.ORIGIN;
+		int centerX = center.getX() >> 4;
+		int centerZ = center.getZ() >> 4;
+		if (!Pregenerator.start(server, sender, centerX, centerZ, radius, msPerTick)) {
+			throw new CommandException("Neo-Hell pregen is already running. Use /neohell pregen stop first.");
+		}
+		int width = radius*2 + 1;
+		sender.sendMessage(new TextComponentString(String.format(Locale.ROOT, "Pregenerating %d chunks of Neo-Hell around chunk %d, %d, up to %d ms a tick...",
+				(long)width * width, centerX, centerZ, msPerTick)));
+	}
+}
@@ -24,6 +24,7 @@
 package com.elytradev.thermionics.world;
 
 import java.util.ArrayList;
+import java.util.Locale;
 import java.util.function.Consumer;
 
 import com.elytradev.thermionics.world.block.BlockGemrock;
@@ -31,6 +32,11 @@ import com.elytradev.thermionics.world.block.BlockMeat;
 import com.elytradev.thermionics.world.block.BlockMeatEdible;
 import com.elytradev.thermionics.world.block.EnumEdibleMeat;
 import com.elytradev.thermionics.world.block.TWBlocks;
+import com.elytradev.thermionics.world.gen.IdlePregenerator;
+import com.elytradev.thermionics.world.gen.NeoHellGeneratorSettings;
+import com.elytradev.thermionics.world.gen.Pregenerator;
+import com.elytradev.thermionics.world.gen.ShapePrefetcher;
+import com.elytradev.thermionics.world.gen.TerrainQuality;
 import com.elytradev.thermionics.world.gen.WorldProviderNeoHell;
 import com.elytradev.thermionics.world.gen.biome.BiomeRegistry;
 import com.elytradev.thermionics.world.gen.biome.NeoBiome;
@@ -67,6 +73,7 @@ import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.Mod.EventHandler;
 import net.minecraftforge.fml.common.SidedProxy;
 import net.minecraftforge.fml.common.event.FMLPreInitializationEvent;
+import net.minecraftforge.fml.common.event.FMLServerStartingEvent;
 import net.minecraftforge.fml.common.eventhandler.Event;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.relauncher.Side;
@@ -99,6 +106,14 @@ public class ThermionicsWorld {
 	public static Configuration CONFIG;
 	public static boolean CONFIG_SHOULD_REGISTER_NEOHELL = true;
 	public static int CONFIG_DIMENSION_ID_NEOHELL = -1; //For dim remaps
+	public static int CONFIG_NEOHELL_GENERATOR_VERSION = NeoHellGeneratorSettings.VERSION_CURRENT;
+	public static boolean CONFIG_NEOHELL_FAST_MATH = false;
+	public static boolean CONFIG_NEOHELL_BIOME_BLENDING = false;
+	public static TerrainQuality CONFIG_NEOHELL_TERRAIN_QUALITY = TerrainQuality.EXACT;
+	public static int CONFIG_NEOHELL_SHAPE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()/2));
+	public static int CONFIG_NEOHELL_SPLIT_THREADS = 0;
+	public static int CONFIG_NEOHELL_IDLE_PREGEN_SHARE = 50;
+	public static int CONFIG_NEOHELL_IDLE_PREGEN_RADIUS = 8;
 	
 	
 	public static CreativeTabs TAB_THERMIONICS_WORLD = new CreativeTabs("thermionics_world") {
@@ -112,16 +127,42 @@ public class ThermionicsWorld {
 	static Proxy proxy;
 	
 	
-	@EventHandler
-	public void preInit(FMLPreInitializationEvent event) {
-		proxy.preInit();
-		
-		CONFIG = new Configuration(event.getSuggestedConfigurationFile());
+	/**
+	 * Reads every setting out of the given config, filling in the defaults for any that are missing. NeoHellPregenTool
+	 * uses this too, to pick up the same settings the game would.
+	 */
+	public static void loadConfig(Configuration config) {
+		CONFIG = config;
 		CONFIG.setCategoryComment("neohell", "These keys affect how the world is generated, and whether it is generated.");
 		CONFIG_SHOULD_REGISTER_NEOHELL = CONFIG.getBoolean("enabled", "neohell", CONFIG_SHOULD_REGISTER_NEOHELL,
 				"Setting this to false disables neohell entirely, and this mod's blocks will be unobtainable unless tweaked in.");
 		CONFIG_DIMENSION_ID_NEOHELL = CONFIG.getInt("id", "neohell", CONFIG_DIMENSION_ID_NEOHELL, Integer.MIN_VALUE, Integer.MAX_VALUE,
 				"Remaps neohell to a different dimension ID, possibly causing it to replace a different dimension. May be catastrophically bad for existing maps.");
+		CONFIG_NEOHELL_GENERATOR_VERSION = CONFIG.getInt("generatorVersion", "neohell", CONFIG_NEOHELL_GENERATOR_VERSION, NeoHellGeneratorSettings.VERSION_LEGACY, NeoHellGeneratorSettings.VERSION_CURRENT,
+				"The terrain generator version used for newly-created Neo-Hell worlds. 0 reproduces the original terrain exactly, 1 uses better-mixed SplitMix64 lattice noise. Worlds remember the version they were created with, so this never affects existing maps.");
+		CONFIG_NEOHELL_FAST_MATH = CONFIG.getBoolean("fastMath", "neohell", CONFIG_NEOHELL_FAST_MATH,
+				"Whether newly-created Neo-Hell worlds use lookup tables in place of exact trigonometry for terrain height. Slightly faster, but moves the odd column by a block, so it's off by default. Has no effect with generatorVersion 0, and existing maps are never affected.");
+		CONFIG_NEOHELL_BIOME_BLENDING = CONFIG.getBoolean("biomeBlending", "neohell", CONFIG_NEOHELL_BIOME_BLENDING,
+				"Whether newly-created Neo-Hell worlds fade terrain height, density and materials across biome borders instead of changing them abruptly. Existing maps are never affected.");
+		String terrainQuality = CONFIG.getString("terrainQuality", "neohell", CONFIG_NEOHELL_TERRAIN_QUALITY.name().toLowerCase(Locale.ROOT),
+				"How closely newly-created Neo-Hell worlds follow the terrain noise. \"exact\" works out every block. \"coarse\" samples a 4x8x4 grid and interpolates, like vanilla: faster, with slightly blockier nougat and straighter overhangs. Existing maps are never affected.",
+				new String[] { "exact", "coarse" });
+		CONFIG_NEOHELL_TERRAIN_QUALITY = terrainQuality.equals("coarse") ? TerrainQuality.COARSE : TerrainQuality.EXACT;
+		CONFIG_NEOHELL_SHAPE_THREADS = CONFIG.getInt("shapeThreads", "neohell", CONFIG_NEOHELL_SHAPE_THREADS, 0, 32,
+				"How many background threads shape Neo-Hell terrain ahead of players as they move. The terrain comes out exactly the same either way; 0 shapes everything on the server thread.");
+		CONFIG_NEOHELL_SPLIT_THREADS = CONFIG.getInt("splitThreads", "neohell", CONFIG_NEOHELL_SPLIT_THREADS, 0, 32,
+				"How many threads help the server thread shape a Neo-Hell chunk it needs right away and nobody shaped ahead. Never more than the cores left over after the server thread and shapeThreads. Off by default, since it hasn't been shown to pay off; check with /neohell bench first. The terrain comes out exactly the same either way.");
+		CONFIG_NEOHELL_IDLE_PREGEN_SHARE = CONFIG.getInt("idlePregenShare", "neohell", CONFIG_NEOHELL_IDLE_PREGEN_SHARE, 0, 100,
+				"What percentage of the time left over at the end of each server tick goes to generating Neo-Hell just past where players can see, and around where portals arrive. Nothing is spent while the server is falling behind; 0 turns this off.");
+		CONFIG_NEOHELL_IDLE_PREGEN_RADIUS = CONFIG.getInt("idlePregenRadius", "neohell", CONFIG_NEOHELL_IDLE_PREGEN_RADIUS, 0, 32,
+				"How many chunks past the view distance idle pregeneration reaches around players and portal arrivals.");
+	}
+	
+	@EventHandler
+	public void preInit(FMLPreInitializationEvent event) {
+		proxy.preInit();
+		
+		loadConfig(new Configuration(event.getSuggestedConfigurationFile()));
 		CONFIG.save();
 		if (CONFIG_SHOULD_REGISTER_NEOHELL) {
 			if (DimensionManager.isDimensionRegistered(CONFIG_DIMENSION_ID_NEOHELL)) {
@@ -155,6 +196,14 @@ public class ThermionicsWorld {
 		MinecraftForge.EVENT_BUS.register(TWBlocks.class);
 		MinecraftForge.EVENT_BUS.register(TWItems.class);
 		MinecraftForge.EVENT_BUS.register(BiomeRegistry.class);
+		MinecraftForge.EVENT_BUS.register(new ShapePrefetcher());
+		MinecraftForge.EVENT_BUS.register(Pregenerator.class);
+		MinecraftForge.EVENT_BUS.register(IdlePregenerator.class);
+	}
+	
+	@EventHandler
+	public void serverStarting(FMLServerStartingEvent event) {
+		event.registerServerCommand(new CommandNeoHell());
 	}
 	
 	@SubscribeEvent
@@ -63,7 +63,7 @@ public class BlockFluidSimple extends BlockFluidFinite {
 		this.quantaPerBlockFloat = 4.0f;
 		this.tickRate = 10; //density-based tickrate winds up really high
 		
-		this.setRegistryName(name);
+		this.setRegistryName("thermionics_world", name);
 		this.setUnlocalizedName("thermionics_world.fluid."+name);
 		
 		this.fluidDamage = new DamageSource("fluid."+fluid.getName()).setDamageBypassesArmor().setDamageIsAbsolute();
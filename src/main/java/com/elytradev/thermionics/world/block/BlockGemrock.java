@@ -47,7 +47,7 @@ public class BlockGemrock extends Block {
 	public BlockGemrock(String name, EnumDyeColor dyeColor) {
 		super(Material.ROCK, MapColor.getBlockColor(dyeColor));
 		
-		this.setRegistryName("gemrock."+name);
+		this.setRegistryName("thermionics_world", "gemrock."+name);
 		this.setUnlocalizedName("thermionics_world.gemrock."+name);
 		
 		this.setHarvestLevel("pickaxe", 1);
@@ -43,7 +43,7 @@ public class BlockMeat extends Block {
 		this.setHarvestLevel("axe", 0);
 		this.setHardness(0.75f);
 		this.setResistance(0.1f);
-		this.setRegistryName("meat."+id);
+		this.setRegistryName("thermionics_world", "meat."+id);
 		this.setUnlocalizedName("thermionics_world.meat."+id);
 		this.setSoundType(ThermionicsWorld.SOUNDTYPE_SQUISH);
 	}
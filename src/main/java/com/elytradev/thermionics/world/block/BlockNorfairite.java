@@ -44,7 +44,7 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 public class BlockNorfairite extends BlockColored implements IItemNamer {
 	public BlockNorfairite(String variety) {
 		super(Material.GLASS);
-		this.setRegistryName("norfairite."+variety);
+		this.setRegistryName("thermionics_world", "norfairite."+variety);
 		this.setUnlocalizedName("thermionics_world.norfairite."+variety);
 		this.setCreativeTab(ThermionicsWorld.TAB_THERMIONICS_WORLD);
 		this.setSoundType(ThermionicsWorld.SOUNDTYPE_SQUISH);
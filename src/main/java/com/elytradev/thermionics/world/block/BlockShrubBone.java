@@ -50,7 +50,7 @@ public class BlockShrubBone extends Block {
 	
 	public BlockShrubBone() {
 		super(Material.ROCK, MapColor.SAND); //Same as BlockBone
-		this.setRegistryName("shrub.bone");
+		this.setRegistryName("thermionics_world", "shrub.bone");
 		this.setUnlocalizedName("thermionics_world.shrub.bone");
 		this.setDefaultState(blockState.getBaseState().withProperty(VARIANT, BoneType.FEMUR));
 		this.setCreativeTab(ThermionicsWorld.TAB_THERMIONICS_WORLD);
@@ -0,0 +1,91 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraftforge.fml.relauncher.ReflectionHelper;
+
+/**
+ * Reaches into a ChunkPrimer's block storage, so whole columns can be written as state IDs without going through
+ * setBlockState one block at a time. Blocks are stored x-major, then z, with y varying fastest.
+ */
+public class ChunkPrimerAccess {
+	private static final IBlockState AIR = Blocks.AIR.getDefaultState();
+	private static final MethodHandle DATA_GETTER;
+	static {
+		MethodHandle getter = null;
+		try {
+			getter = MethodHandles.lookup().unreflectGetter(ReflectionHelper.findField(ChunkPrimer.class, "data", "field_177860_a"));
+		} catch (Throwable t) {
+			//Leave it null; callers fall back to setBlockState
+		}
+		DATA_GETTER = getter;
+	}
+	
+	private ChunkPrimerAccess() {}
+	
+	/**
+	 * Gets the primer's backing array of state IDs, or null if it couldn't be reached in this environment.
+	 */
+	@Nullable
+	public static char[] getData(ChunkPrimer primer) {
+		if (DATA_GETTER==null) return null;
+		try {
+			return (char[])DATA_GETTER.invokeExact(primer);
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Sets every block in the primer back to air, the same as a brand new primer.
+	 */
+	public static void clear(ChunkPrimer primer) {
+		char[] data = getData(primer);
+		if (data!=null) {
+			Arrays.fill(data, (char)0);
+			return;
+		}
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+					primer.setBlockState(x, y, z, AIR);
+				}
+			}
+		}
+	}
+	
+	/** Gets the index of the given block in the primer's backing array */
+	public static int index(int x, int y, int z) {
+		return x << 12 | z << 8 | y;
+	}
+}
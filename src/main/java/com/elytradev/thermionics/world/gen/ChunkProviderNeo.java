@@ -26,12 +26,13 @@ package com.elytradev.thermionics.world.gen;
 
 import java.util.List;
 import java.util.Random;
-import java.util.function.Function;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nullable;
 
 import com.elytradev.thermionics.world.Benchmark;
+import com.elytradev.thermionics.world.ThermionicsWorld;
 import com.elytradev.thermionics.world.block.TWBlocks;
-import com.elytradev.thermionics.world.gen.biome.BiomeRegistry;
-import com.elytradev.thermionics.world.gen.biome.NeoBiome;
 import com.google.common.collect.ImmutableList;
 
 import net.minecraft.block.BlockFalling;
@@ -45,13 +46,13 @@ import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import net.minecraft.world.gen.IChunkGenerator;
 import net.minecraft.world.gen.feature.WorldGenBush;
 import net.minecraft.world.gen.feature.WorldGenFire;
 import net.minecraft.world.gen.feature.WorldGenMinable;
 import net.minecraft.world.gen.feature.WorldGenerator;
 import net.minecraft.world.gen.structure.MapGenNetherBridge;
-import net.minecraftforge.fluids.BlockFluidBase;
 
 public class ChunkProviderNeo implements IChunkGenerator {
 	public static final int HEIGHT = 256;
@@ -68,7 +69,6 @@ public class ChunkProviderNeo implements IChunkGenerator {
 	protected static final IBlockState STONE = Blocks.STONE.getDefaultState();
 	protected static final IBlockState SOUL_SAND = Blocks.SOUL_SAND.getDefaultState();
 	
-	protected static IBlockState PAIN;
 	//protected static final IBlockState LAVA = Blocks.LAVA.getDefaultState(); //Use sparingly
 	//protected static final IBlockState GRAVEL = Blocks.GRAVEL.getDefaultState();
 	
@@ -76,12 +76,23 @@ public class ChunkProviderNeo implements IChunkGenerator {
 	protected World world;
 	protected long seed;
 	protected Random random;
-
-	protected ScaledNoiseField noiseTerrainBase;
-	protected ScaledNoiseField noiseTerrainFine;
-	
-	protected ScaledNoiseVolume noiseVolumeBase;
-	protected ScaledNoiseVolume noiseVolumeFine;
+	protected NeoHellGeneratorSettings settings;
+
+	protected TerrainShaper shaper;
+	/** Shapes chunks ahead of time on other threads; null if that's turned off */
+	@Nullable
+	protected ShapePipeline pipeline;
+	/** How many chunks the pipeline can hold at once, at about 32 KB each: 4 MB a world, and 5 rings around a player */
+	private static final int PIPELINE_CAPACITY = 128;
+	/**
+	 * Threads that help the server thread shape a chunk it needs right away, shared by every world; null if that's
+	 * turned off. Created with the first ChunkProviderNeo, once the config has been read.
+	 */
+	@Nullable
+	private static ForkJoinPool sharedColumnPool;
+	private static boolean columnPoolCreated = false;
+	@Nullable
+	private final ForkJoinPool columnPool = getColumnPool();
 	
 	//protected VoronoiClusterField<NeoBiome> biomeSelector;
 
@@ -89,6 +100,8 @@ public class ChunkProviderNeo implements IChunkGenerator {
 	private final WorldGenFire fireFeature = new WorldGenFire();
 	private final NeoHellGenerators.Lava hellSpringGen = new NeoHellGenerators.Lava(Blocks.FLOWING_LAVA);
 	private MapGenNetherBridge genNetherBridge = new MapGenNetherBridge();
+	/** Lets genNetherBridge see chunks that were shaped straight into their sections */
+	private final ThreadLocal<SectionPrimer> structurePrimer = ThreadLocal.withInitial(SectionPrimer::new);
 	private final WorldGenBush brownMushroomFeature = new WorldGenBush(Blocks.BROWN_MUSHROOM);
 	private final WorldGenBush redMushroomFeature = new WorldGenBush(Blocks.RED_MUSHROOM);
 	private final WorldGenerator quartzGen = new WorldGenMinable(Blocks.QUARTZ_ORE.getDefaultState(), 14, (it)->it.isFullBlock());
@@ -110,88 +123,51 @@ public class ChunkProviderNeo implements IChunkGenerator {
 		this.world = world;
 		this.seed = seed;
 		this.random = new Random(seed);
-		
-		
-
-		this.noiseTerrainBase = new ScaledNoiseField(random.nextLong(), 64f);
-		this.noiseTerrainFine = new ScaledNoiseField(random.nextLong(), 32f);
-		this.noiseVolumeBase = new ScaledNoiseVolume(random.nextLong(), 40f);
-		this.noiseVolumeFine = new ScaledNoiseVolume(random.nextLong(), 20f);
-		//this.biomeSelector = new VoronoiClusterField<NeoBiome>(random.nextLong(), 16*9);
-
-		PAIN = TWBlocks.FLUID_PAIN.getDefaultState().withProperty(BlockFluidBase.LEVEL, 3);
-		
+		this.settings = NeoHellGeneratorSettings.forWorld(world);
+		this.shaper = new TerrainShaper(seed, world.getBiomeProvider(), settings);
+		if (ThermionicsWorld.CONFIG_NEOHELL_SHAPE_THREADS>0 && !world.isRemote) {
+			this.pipeline = new ShapePipeline(shaper, ThermionicsWorld.CONFIG_NEOHELL_SHAPE_THREADS, PIPELINE_CAPACITY);
+		}
 	}
-
-	protected void generateShape(int chunkX, int chunkZ, ChunkPrimer primer) {
-		for(int z=0; z<16; z++) {
-			for(int x=0; x<16; x++) {
-				int blockX = chunkX*16+x;
-				int blockZ = chunkZ*16+z;
-				
-				float terrainHeightBase = 128f;
-				float densityScale = 1.0f;
-				Function<Integer, IBlockState> terrainMaterialFunction = (it)->Blocks.NETHERRACK.getDefaultState();
-				Function<Float, IBlockState> densityMaterialFunction = (it)->Blocks.NETHERRACK.getDefaultState();
-				
-				Biome biomeVanilla = world.getBiome(new BlockPos(blockX, 0, blockZ));
-				if (biomeVanilla instanceof NeoBiome) {
-					NeoBiome biome = (NeoBiome)biomeVanilla;
-					
-					terrainHeightBase = biome.getBaseHeight();
-					densityScale = biome.getDensity();
-					terrainMaterialFunction = biome::getTerrainMaterial;
-					densityMaterialFunction = biome::getDensityMaterial;
-				}
-				
-				float terrainHeightHigh = terrainHeightBase / 4;
-				float terrainHeightLow = terrainHeightBase - terrainHeightHigh;
-
-				float columnHeight = 16;
-
-				columnHeight += noiseTerrainBase.getFiltered(blockX, blockZ)*terrainHeightLow;
-				columnHeight += noiseTerrainFine.getFiltered(blockX, blockZ)*terrainHeightHigh;
-				//int columnHeightDuplicate = (int)columnHeight;
-				
-				//columnHeight = SEA_LEVEL + 4; //TODO: REMOVE DEBUG HEIGHT
-
-				for(int y=0; y<255; y++) {
-					
-					float density = noiseVolumeBase.get(blockX, y, blockZ);
-					density*= (densityScale*0.75f);
-					density = density + (noiseVolumeFine.get(blockX, y, blockZ)-0.5f)*(densityScale*0.25f);
-					if (y>DENSITY_SCALING_START) {
-						float densityProgress = (y - DENSITY_SCALING_START) / (float)DENSITY_SCALING_LENGTH;
-						float scalingFactor = (float)Math.cos(densityProgress*Math.PI/2f);
-						density *= scalingFactor;
-					}
-					if (density>1.0f) density=1.0f;
-
-					IBlockState cur = AIR;
-					if (y==0) {
-						cur = BEDROCK;
-					} else if (y<=(int)columnHeight) {
-						if (density>0.1f) {
-							
-							cur = terrainMaterialFunction.apply((int)columnHeight-y);
-						} else { //Extremely low densities carve pits and caves into terrain
-							if (y<SEA_LEVEL) cur=PAIN;
-						}
-						//cur = NETHERRACK;
-					} else {
-						if (density>0.5f) {
-							cur = densityMaterialFunction.apply((density-0.5f)*2);
-							//cur=STONE;
-						} else {
-							if (y<SEA_LEVEL) cur=PAIN;
-						}
-
-					}
-
-					primer.setBlockState(x, y, z, cur);
-				}
-			}
+	
+	@Nullable
+	private static synchronized ForkJoinPool getColumnPool() {
+		if (!columnPoolCreated) {
+			//Never more than the cores left over once the server thread and the shape pipeline's workers have theirs
+			int spareCores = Runtime.getRuntime().availableProcessors() - 1 - ThermionicsWorld.CONFIG_NEOHELL_SHAPE_THREADS;
+			sharedColumnPool = TerrainShaper.createColumnPool(Math.min(ThermionicsWorld.CONFIG_NEOHELL_SPLIT_THREADS, spareCores));
+			columnPoolCreated = true;
 		}
+		return sharedColumnPool;
+	}
+
+	protected void generateShape(int chunkX, int chunkZ, ChunkPrimer primer, byte[] biomeArray) {
+		shaper.generateShape(chunkX, chunkZ, primer, biomeArray);
+	}
+	
+	protected void generateShape(int chunkX, int chunkZ, ExtendedBlockStorage[] sections, boolean storeSkylight, byte[] biomeArray) {
+		//Something's waiting on this chunk right now, so let spare cores pitch in if they're allowed to
+		shaper.generateShape(chunkX, chunkZ, sections, storeSkylight, biomeArray, columnPool);
+	}
+	
+	/**
+	 * Gets the TerrainShaper this provider lays chunks out with. It's safe to use from any thread.
+	 */
+	public TerrainShaper getShaper() {
+		return shaper;
+	}
+	
+	public NeoHellGeneratorSettings getSettings() {
+		return settings;
+	}
+	
+	/**
+	 * Gets the pipeline chunks can be queued up in to be shaped ahead of time, or null if shaping all happens on the
+	 * server thread.
+	 */
+	@Nullable
+	public ShapePipeline getPipeline() {
+		return pipeline;
 	}
 
 
@@ -199,37 +175,29 @@ public class ChunkProviderNeo implements IChunkGenerator {
 	public Chunk generateChunk(int x, int z) {
 		
 		this.random.setSeed((long)x * 341873128712L + (long)z * 132897987541L);
-		ChunkPrimer chunkprimer = new ChunkPrimer();
-		generateShape(x,z,chunkprimer);
+		//Shape straight into the chunk's sections rather than into a ChunkPrimer that'd only get copied over
+		Chunk chunk = new Chunk(this.world, x, z);
+		boolean storeSkylight = world.provider.hasSkyLight();
+		byte[] biomes = new byte[16*16];
+		ShapePipeline.Shaped shaped = (pipeline==null) ? null : pipeline.take(x, z);
+		if (shaped!=null) {
+			shaped.blocks.writeTo(chunk.getBlockStorageArray(), storeSkylight);
+			System.arraycopy(shaped.biomes, 0, biomes, 0, biomes.length);
+			pipeline.release(shaped);
+		} else {
+			generateShape(x,z,chunk.getBlockStorageArray(),storeSkylight,biomes);
+		}
 		//this.prepareHeights(x, z, chunkprimer);
 		//this.buildSurfaces(x, z, chunkprimer);
 		//this.genNetherCaves.generate(this.world, x, z, chunkprimer);
 
 		//if (this.generateStructures) {
-			this.genNetherBridge.generate(this.world, x, z, chunkprimer);
+			this.genNetherBridge.generate(this.world, x, z, structurePrimer.get().wrap(chunk, storeSkylight));
 		//}
 
-		Chunk chunk = new Chunk(this.world, chunkprimer, x, z);
-
 		//Copy biomes in from biomeProvider
 		//Biome[] abiome = this.world.getBiomeProvider().getBiomes((Biome[])null, x * 16, z * 16, 16, 16);
-		byte[] abyte = chunk.getBiomeArray();
-		
-		for(int zi=0; zi<16; zi++) {
-			for(int xi=0; xi<16; xi++) {
-				int baseX = x; if (baseX<0) baseX-=1; baseX*=16;
-				int baseZ = z; if (baseZ<0) baseZ-=1; baseZ*=16;
-				
-				
-				Biome vanillaBiome = world.getBiome(new BlockPos(baseX+xi, 0, baseZ+zi));
-				byte id = (byte)Biome.getIdForBiome(Biomes.HELL);
-				if (vanillaBiome instanceof NeoBiome) {
-					id = (byte)BiomeRegistry.NEO_HELL.getIDForObject((NeoBiome)vanillaBiome);
-					//id = (byte)((NeoBiome)vanillaBiome).getId();
-				}
-				abyte[zi*16+xi] = id;
-			}
-		}
+		chunk.setBiomeArray(biomes);
 		//for (int i = 0; i < abyte.length; ++i) {
 		//	abyte[i] = (byte)Biome.REGISTRY.getIDForObject(Biomes.HELL);
 		//}
@@ -414,7 +382,9 @@ public class ChunkProviderNeo implements IChunkGenerator {
 
 	@Override
 	public void recreateStructures(Chunk chunkIn, int x, int z) {
-		//this.genNetherBridge.generate(this.world, x, z, (ChunkPrimer)null);
+		//Chunks that were saved before they were populated, like the ones NeoHellPregenTool writes, need their
+		//fortress starts worked out again or population won't place any fortress pieces in them
+		this.genNetherBridge.generate(this.world, x, z, (ChunkPrimer)null);
 	}
 
 	@Override
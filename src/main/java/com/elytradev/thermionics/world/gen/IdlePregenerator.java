@@ -0,0 +1,278 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.elytradev.thermionics.world.ThermionicsWorld;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.gen.ChunkProviderServer;
+import net.minecraftforge.common.DimensionManager;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.PlayerEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/**
+ * Uses the time the server would otherwise spend asleep between ticks to generate and populate Neo-Hell just past
+ * where players can see, and around the places portals drop players off, so that walking into new territory finds
+ * the chunks already on disk. Whenever the server shows any sign of falling behind, this stops for a while.
+ */
+public class IdlePregenerator {
+	private static final long TICK_NANOS = 50_000_000L;
+	/**
+	 * Ticks normally start 50ms apart. Further apart means a tick overran; closer together means the server is
+	 * running ticks back to back to catch up. Either way there's no spare time.
+	 */
+	private static final long SLOW_TICK_INTERVAL = TICK_NANOS * 6/5;
+	private static final long CATCH_UP_TICK_INTERVAL = TICK_NANOS * 4/5;
+	/** How many ticks to leave the server alone after it last fell behind */
+	private static final int BACKOFF_TICKS = 100;
+	/** How often, in ticks, to look for missing chunks around players and portals */
+	private static final int SCAN_INTERVAL = 40;
+	private static final int PREFETCH_AHEAD = 16;
+	/** Players are spread out, so there's less point holding on to chunks here than in a pregen run */
+	private static final int KEEP_LOADED = 64;
+	
+	private static final PregenStep step = new PregenStep(KEEP_LOADED);
+	
+	private static long tickStart = 0L;
+	private static long lastTickStart = 0L;
+	private static int backoff = BACKOFF_TICKS;
+	private static int ticksUntilScan = 0;
+	private static long anchorSignature = 0L;
+	@Nullable
+	private static Scan scan = null;
+	
+	/** Chunks that still need generating, nearest to a player or portal first */
+	private static long[] targets = new long[0];
+	private static int next = 0;
+	private static int prefetched = 0;
+	
+	@SubscribeEvent
+	public static void onServerTick(TickEvent.ServerTickEvent event) {
+		if (event.phase==TickEvent.Phase.START) {
+			lastTickStart = tickStart;
+			tickStart = System.nanoTime();
+			long interval = tickStart - lastTickStart;
+			if (interval>SLOW_TICK_INTERVAL || interval<CATCH_UP_TICK_INTERVAL) backoff = BACKOFF_TICKS;
+			return;
+		}
+		
+		if (ThermionicsWorld.CONFIG_NEOHELL_IDLE_PREGEN_SHARE<=0) return;
+		if (backoff>0) {
+			backoff--;
+			return;
+		}
+		//Don't get in the way of an explicit pregen run, which has its own budget
+		if (Pregenerator.isRunning()) return;
+		//Neo-Hell being unloaded means nobody's there to explore it
+		WorldServer world = DimensionManager.getWorld(ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL);
+		if (world==null) return;
+		
+		long now = System.nanoTime();
+		long spare = TICK_NANOS - (now - tickStart);
+		long deadline = now + spare * ThermionicsWorld.CONFIG_NEOHELL_IDLE_PREGEN_SHARE / 100;
+		ChunkProviderServer chunks = world.getChunkProvider();
+		
+		if (--ticksUntilScan<=0) {
+			ticksUntilScan = SCAN_INTERVAL;
+			startScan(world);
+		}
+		//Scanning comes out of the same budget, and the old targets are worked through until it's done
+		if (scan!=null && scan.advance(chunks, deadline)) {
+			targets = scan.getTargets();
+			next = 0;
+			prefetched = 0;
+			scan = null;
+		}
+		if (next>=targets.length) {
+			//Hanging on to chunks with nothing left to do would keep Neo-Hell loaded after everyone leaves
+			step.unloadAll(world);
+			return;
+		}
+		
+		ShapePipeline pipeline = PregenStep.getPipeline(world);
+		for(int generated=0; generated<PregenStep.MAX_CHUNKS_PER_TICK && next<targets.length && System.nanoTime()<deadline; ) {
+			if (pipeline!=null) {
+				prefetched = Math.max(prefetched, next);
+				for(; prefetched<Math.min(next + PREFETCH_AHEAD, targets.length); prefetched++) {
+					PregenStep.prefetch(pipeline, chunks, (int)targets[prefetched], (int)(targets[prefetched] >> 32));
+				}
+			}
+			
+			long target = targets[next++];
+			int x = (int)target;
+			int z = (int)(target >> 32);
+			//A player or another target might have got here first
+			if (chunks.isChunkGeneratedAt(x, z)) continue;
+			step.generate(world, x, z);
+			generated++;
+		}
+	}
+	
+	/**
+	 * Starts looking for the chunks missing from just past each player's view distance, and from within view distance
+	 * of each portal landing. Nothing is rescanned while players stay in the same chunks: the last scan's chunks are
+	 * either still being generated or all done, so scanning again would turn up nothing new.
+	 */
+	private static void startScan(WorldServer world) {
+		int view = world.getMinecraftServer().getPlayerList().getViewDistance();
+		int radius = ThermionicsWorld.CONFIG_NEOHELL_IDLE_PREGEN_RADIUS;
+		
+		List<ChunkPos> players = new ArrayList<>();
+		for(EntityPlayer player : world.playerEntities) {
+			players.add(new ChunkPos(MathHelper.floor(player.posX) >> 4, MathHelper.floor(player.posZ) >> 4));
+		}
+		List<ChunkPos> portals = PortalLandings.forWorld(world).getLandings();
+		long signature = ((players.hashCode()*31L + portals.hashCode())*31L + view)*31L + radius;
+		if (signature==anchorSignature) return;
+		anchorSignature = signature;
+		scan = new Scan(players, portals, view, view+radius);
+	}
+	
+	/**
+	 * Finds the chunk at the given position round the square ring the given distance out from center, going round
+	 * from the -x, -z corner. Every ring but the center one has ring*8 chunks.
+	 */
+	private static long ringChunk(ChunkPos center, int ring, int position) {
+		if (ring==0) return ChunkPos.asLong(center.x, center.z);
+		int offset = position % (ring*2);
+		switch(position / (ring*2)) {
+		case 0: return ChunkPos.asLong(center.x - ring + offset, center.z - ring);
+		case 1: return ChunkPos.asLong(center.x + ring, center.z - ring + offset);
+		case 2: return ChunkPos.asLong(center.x + ring - offset, center.z + ring);
+		default: return ChunkPos.asLong(center.x - ring, center.z + ring - offset);
+		}
+	}
+	
+	/**
+	 * A scan for missing chunks, carried out a piece at a time over as many ticks as it takes. Rings go outwards, so
+	 * the chunks needed soonest come first. Chunks inside a player's view distance are already loaded, so players only
+	 * start past it.
+	 */
+	private static class Scan {
+		/** Players first, then portals */
+		final List<ChunkPos> anchors = new ArrayList<>();
+		final int playerCount;
+		final int view;
+		final int rings;
+		/** For each anchor, the other anchors close enough that their rings might cross its own */
+		final int[][] neighbours;
+		
+		final List<Long> result = new ArrayList<>();
+		int ring = 0;
+		int anchor = 0;
+		/** How far round the current anchor's ring the scan has got */
+		int position = 0;
+		
+		Scan(List<ChunkPos> players, List<ChunkPos> portals, int view, int rings) {
+			anchors.addAll(players);
+			anchors.addAll(portals);
+			this.playerCount = players.size();
+			this.view = view;
+			this.rings = rings;
+			
+			neighbours = new int[anchors.size()][];
+			for(int i=0; i<anchors.size(); i++) {
+				List<Integer> near = new ArrayList<>();
+				for(int j=0; j<anchors.size(); j++) {
+					if (j!=i && distance(anchors.get(j), anchors.get(i).x, anchors.get(i).z)<=rings*2) near.add(j);
+				}
+				neighbours[i] = new int[near.size()];
+				for(int j=0; j<neighbours[i].length; j++) neighbours[i][j] = near.get(j);
+			}
+		}
+		
+		/**
+		 * Checks chunks until the deadline, picking up where the last call left off. Returns true once every ring is
+		 * done.
+		 */
+		boolean advance(ChunkProviderServer chunks, long deadline) {
+			for(; ring<=rings; ring++, anchor=0) {
+				for(; anchor<anchors.size(); anchor++, position=0) {
+					if (anchor<playerCount && ring<=view) continue;
+					for(int size=Math.max(1, ring*8); position<size; position++) {
+						if (System.nanoTime()>=deadline) return false;
+						long key = ringChunk(anchors.get(anchor), ring, position);
+						int x = (int)key;
+						int z = (int)(key >> 32);
+						if (!scannedBefore(x, z) && !chunks.isChunkGeneratedAt(x, z)) result.add(key);
+					}
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Whether the chunk at x, z came up earlier in the scan, on a nearer ring of some anchor or on this ring of an
+		 * anchor before this one. Working it out beats remembering every chunk seen, which for a crowded server with
+		 * a wide radius is enough to stall a tick just growing the set.
+		 */
+		private boolean scannedBefore(int x, int z) {
+			for(int other : neighbours[anchor]) {
+				int distance = distance(anchors.get(other), x, z);
+				if (other<playerCount && distance<=view) continue;
+				if (distance<ring || (distance==ring && other<anchor)) return true;
+			}
+			return false;
+		}
+		
+		/** Which ring round center the chunk at x, z is on */
+		private static int distance(ChunkPos center, int x, int z) {
+			return Math.max(Math.abs(x - center.x), Math.abs(z - center.z));
+		}
+		
+		long[] getTargets() {
+			long[] targets = new long[result.size()];
+			for(int i=0; i<targets.length; i++) targets[i] = result.get(i);
+			return targets;
+		}
+	}
+	
+	@SubscribeEvent
+	public static void onPlayerChangedDimension(PlayerEvent.PlayerChangedDimensionEvent event) {
+		if (event.toDim!=ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL) return;
+		EntityPlayer player = event.player;
+		PortalLandings.forWorld(player.world).record(MathHelper.floor(player.posX) >> 4, MathHelper.floor(player.posZ) >> 4);
+	}
+	
+	@SubscribeEvent
+	public static void onWorldUnload(WorldEvent.Unload event) {
+		if (event.getWorld().provider.getDimension()!=ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL) return;
+		step.forget();
+		targets = new long[0];
+		next = 0;
+		prefetched = 0;
+		anchorSignature = 0L;
+		scan = null;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+/**
+ * Turns a lattice hash into a noise value between 0 and 1. Both variants are pure functions, so noise objects which
+ * use them can be shared freely between threads.
+ */
+public enum LatticeHash {
+	/**
+	 * The value {@code new Random(hash).nextFloat()} would produce, computed without a Random. This is what every
+	 * world made before generator version 1 was built from, so it has to stay bit-for-bit identical.
+	 */
+	LEGACY {
+		@Override
+		public float toFloat(long hash) {
+			long seed = (hash ^ MULTIPLIER) & MASK;
+			seed = (seed * MULTIPLIER + ADDEND) & MASK;
+			return ((int)(seed >>> (48 - 24))) / ((float)(1 << 24));
+		}
+	},
+	
+	/**
+	 * A SplitMix64 finalizer. Mixes every input bit into the output, where LEGACY only gets one round of an LCG.
+	 */
+	SPLITMIX {
+		@Override
+		public float toFloat(long hash) {
+			long z = hash + 0x9E3779B97F4A7C15L;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			z = z ^ (z >>> 31);
+			return ((int)(z >>> (64 - 24))) / ((float)(1 << 24));
+		}
+	};
+	
+	//java.util.Random's LCG constants
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+	
+	/**
+	 * Gets a uniformly distributed value in [0..1) for the given hash
+	 */
+	public abstract float toFloat(long hash);
+}
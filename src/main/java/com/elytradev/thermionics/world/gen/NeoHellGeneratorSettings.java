@@ -0,0 +1,168 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.io.File;
+
+import com.elytradev.thermionics.world.ThermionicsWorld;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+import net.minecraft.world.storage.MapStorage;
+
+/**
+ * Per-world record of how Neo-Hell terrain is generated. This is saved alongside the dimension, so that changing
+ * the config, or updating the mod, never changes the terrain a world that already exists will generate.
+ */
+public class NeoHellGeneratorSettings extends WorldSavedData {
+	public static final String DATA_NAME = "thermionics_world_neohell";
+	
+	/** Worlds generated before these settings existed. Lattice values match the original java.util.Random ones. */
+	public static final int VERSION_LEGACY = 0;
+	/**
+	 * Lattice values come from a stateless SplitMix64 hash, and chunk biome arrays line up with the terrain on
+	 * negative coordinates.
+	 */
+	public static final int VERSION_SPLITMIX = 1;
+	public static final int VERSION_CURRENT = VERSION_SPLITMIX;
+	
+	private int version = VERSION_CURRENT;
+	private boolean fastMath = false;
+	private boolean biomeBlending = false;
+	private TerrainQuality terrainQuality = TerrainQuality.EXACT;
+	
+	public NeoHellGeneratorSettings(String name) {
+		super(name);
+	}
+	
+	/**
+	 * Creates detached settings, for generating terrain outside of a loaded world. Optional features start out off.
+	 */
+	public static NeoHellGeneratorSettings of(int version) {
+		NeoHellGeneratorSettings result = new NeoHellGeneratorSettings(DATA_NAME);
+		result.version = version;
+		return result;
+	}
+	
+	/**
+	 * Sets whether terrain uses lookup-table approximations in place of exact trigonometry. This moves some column
+	 * heights by a block, so it's only ever turned on for new worlds, and legacy terrain ignores it.
+	 */
+	public NeoHellGeneratorSettings withFastMath(boolean fastMath) {
+		this.fastMath = fastMath;
+		return this;
+	}
+	
+	/**
+	 * Sets whether terrain height, density and materials fade between neighbouring biomes instead of changing
+	 * abruptly at their borders.
+	 */
+	public NeoHellGeneratorSettings withBiomeBlending(boolean biomeBlending) {
+		this.biomeBlending = biomeBlending;
+		return this;
+	}
+	
+	/**
+	 * Sets how closely terrain follows its noise; see {@link TerrainQuality} for what the coarser tier looks like.
+	 */
+	public NeoHellGeneratorSettings withTerrainQuality(TerrainQuality terrainQuality) {
+		this.terrainQuality = terrainQuality;
+		return this;
+	}
+	
+	/**
+	 * Gets the settings saved for this world. If there aren't any, new settings are created: worlds which already
+	 * have Neo-Hell terrain on disk get the legacy settings they were made with, and fresh worlds get the defaults
+	 * from the config.
+	 */
+	public static NeoHellGeneratorSettings forWorld(World world) {
+		MapStorage storage = world.getPerWorldStorage();
+		NeoHellGeneratorSettings settings = (NeoHellGeneratorSettings) storage.getOrLoadData(NeoHellGeneratorSettings.class, DATA_NAME);
+		if (settings==null) {
+			if (hasGeneratedChunks(world)) {
+				settings = of(VERSION_LEGACY);
+			} else {
+				settings = of(ThermionicsWorld.CONFIG_NEOHELL_GENERATOR_VERSION)
+						.withFastMath(ThermionicsWorld.CONFIG_NEOHELL_FAST_MATH)
+						.withBiomeBlending(ThermionicsWorld.CONFIG_NEOHELL_BIOME_BLENDING)
+						.withTerrainQuality(ThermionicsWorld.CONFIG_NEOHELL_TERRAIN_QUALITY);
+			}
+			storage.setData(DATA_NAME, settings);
+			settings.markDirty();
+		}
+		
+		return settings;
+	}
+	
+	private static boolean hasGeneratedChunks(World world) {
+		File worldDirectory = world.getSaveHandler().getWorldDirectory();
+		if (worldDirectory==null) return false;
+		String saveFolder = world.provider.getSaveFolder();
+		File dimensionDirectory = (saveFolder==null) ? worldDirectory : new File(worldDirectory, saveFolder);
+		File[] regions = new File(dimensionDirectory, "region").listFiles((dir, name)->name.endsWith(".mca"));
+		return regions!=null && regions.length>0;
+	}
+	
+	public int getVersion() {
+		return version;
+	}
+	
+	public boolean isFastMath() {
+		return fastMath && version!=VERSION_LEGACY;
+	}
+	
+	public boolean isBiomeBlending() {
+		return biomeBlending;
+	}
+	
+	public TerrainQuality getTerrainQuality() {
+		return terrainQuality;
+	}
+	
+	public LatticeHash getLatticeHash() {
+		return (version>=VERSION_SPLITMIX) ? LatticeHash.SPLITMIX : LatticeHash.LEGACY;
+	}
+	
+	@Override
+	public void readFromNBT(NBTTagCompound tag) {
+		version = tag.getInteger("version");
+		fastMath = tag.getBoolean("fastMath");
+		biomeBlending = tag.getBoolean("biomeBlending");
+		//Worlds saved before quality tiers existed were all exact
+		terrainQuality = TerrainQuality.EXACT;
+		for(TerrainQuality quality : TerrainQuality.values()) {
+			if (quality.name().equals(tag.getString("terrainQuality"))) terrainQuality = quality;
+		}
+	}
+	
+	@Override
+	public NBTTagCompound writeToNBT(NBTTagCompound tag) {
+		tag.setInteger("version", version);
+		tag.setBoolean("fastMath", fastMath);
+		tag.setBoolean("biomeBlending", biomeBlending);
+		tag.setString("terrainQuality", terrainQuality.name());
+		return tag;
+	}
+}
@@ -0,0 +1,393 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.elytradev.thermionics.world.ThermionicsWorld;
+import com.elytradev.thermionics.world.block.TWBlocks;
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.chunk.storage.RegionFile;
+import net.minecraftforge.common.config.Configuration;
+import net.minecraftforge.event.RegistryEvent;
+import net.minecraftforge.fml.common.registry.ForgeRegistries;
+
+/**
+ * Generates Neo-Hell terrain straight into a world's region files, without a server. Chunks come out shaped, with
+ * their biomes, but unpopulated; the game populates them, and places fortress pieces, the first time they're loaded
+ * with their neighbours. Chunks already in the region files are never touched.
+ * 
+ * <p>Block IDs in region files are the world's own, so the world has to have been opened with this mod installed at
+ * least once, and it mustn't be open while this runs. Settings come from the instance's config/thermionics_world.cfg,
+ * found next to the world or its saves directory, or from the file given with --config.
+ * 
+ * <p>Experimental: no region file written by this has been loaded in a real game yet, so it won't run without
+ * --experimental, and the world should be backed up first. Until a written world has been checked in game against
+ * normal generation at the edges of the generated area, don't use it on a world anyone cares about.
+ */
+public class NeoHellPregenTool {
+	/** The chunk format version Minecraft 1.12.2 writes */
+	private static final int DATA_VERSION = 1343;
+	private static final long REPORT_INTERVAL_MILLIS = 5000L;
+	
+	private static final String USAGE = "Usage: NeoHellPregenTool <world directory> <seed> <radius in chunks> [--center <chunkX> <chunkZ>] [--threads <count>] [--dimension <id>] [--config <thermionics_world.cfg>] --experimental";
+	
+	private final TerrainShaper shaper;
+	private final File regionDirectory;
+	/** Maps block IDs in this JVM to the world's block IDs; -1 for blocks the world doesn't know about */
+	private final int[] worldBlockIds;
+	
+	private final AtomicLong generated = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+	
+	private NeoHellPregenTool(TerrainShaper shaper, File regionDirectory, int[] worldBlockIds) {
+		this.shaper = shaper;
+		this.regionDirectory = regionDirectory;
+		this.worldBlockIds = worldBlockIds;
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length<3) fail(USAGE);
+		File worldDirectory = new File(args[0]);
+		long seed = parseLong(args[1]);
+		int radius = (int)parseLong(args[2]);
+		int centerX = 0;
+		int centerZ = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Integer dimension = null;
+		File configFile = null;
+		boolean experimental = false;
+		for(int i=3; i<args.length; i++) {
+			switch(args[i]) {
+			case "--center":
+				if (i+2>=args.length) fail(USAGE);
+				centerX = (int)parseLong(args[++i]);
+				centerZ = (int)parseLong(args[++i]);
+				break;
+			case "--threads":
+				if (i+1>=args.length) fail(USAGE);
+				threads = Math.max(1, (int)parseLong(args[++i]));
+				break;
+			case "--dimension":
+				if (i+1>=args.length) fail(USAGE);
+				dimension = (int)parseLong(args[++i]);
+				break;
+			case "--experimental":
+				experimental = true;
+				break;
+			case "--config":
+				if (i+1>=args.length) fail(USAGE);
+				configFile = new File(args[++i]);
+				if (!configFile.isFile()) fail("There's no config file at "+configFile+".");
+				break;
+			default:
+				fail(USAGE);
+			}
+		}
+		if (radius<0) fail("The radius can't be negative.");
+		if (!experimental) fail("This tool is experimental: region files it writes haven't been checked in a real game yet, and a bad one can damage the save. Back the world up, then pass --experimental to run it anyway.");
+		if (configFile==null) configFile = findConfig(worldDirectory);
+		if (configFile!=null) {
+			//Only read, never saved, so the tool doesn't rewrite the instance's config
+			ThermionicsWorld.loadConfig(new Configuration(configFile));
+			System.out.println("Using settings from "+configFile);
+		}
+		if (dimension==null) dimension = ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL;
+		
+		File levelFile = new File(worldDirectory, "level.dat");
+		if (!levelFile.isFile()) fail("There's no level.dat in "+worldDirectory+". Open the world once with Thermionics|World installed first.");
+		NBTTagCompound level = readCompressed(levelFile);
+		long worldSeed = level.getCompoundTag("Data").getLong("RandomSeed");
+		if (worldSeed!=seed) fail("This world's seed is "+worldSeed+", not "+seed+". Terrain generated with any other seed would never line up with what the game generates next to it.");
+		
+		Bootstrap.register();
+		Map<ResourceLocation, Integer> worldIds = readBlockIds(level);
+		if (worldIds.isEmpty()) fail("level.dat has no Forge block IDs in it. Open the world once with Thermionics|World installed first.");
+		int[] worldBlockIds = registerBlocks(worldIds);
+		
+		File dimensionDirectory = new File(worldDirectory, "DIM"+dimension);
+		File regionDirectory = new File(dimensionDirectory, "region");
+		if (!regionDirectory.isDirectory() && !regionDirectory.mkdirs()) fail("Couldn't create "+regionDirectory);
+		NeoHellGeneratorSettings settings = loadSettings(dimensionDirectory, regionDirectory, configFile!=null);
+		
+		NeoHellPregenTool tool = new NeoHellPregenTool(new TerrainShaper(seed, new BiomeProviderNeo(seed), settings), regionDirectory, worldBlockIds);
+		tool.run(centerX, centerZ, radius, threads);
+	}
+	
+	/**
+	 * Finds the instance's config for a world: a server keeps its world next to the config directory, a client keeps
+	 * it in saves/, one level further down.
+	 */
+	private static File findConfig(File worldDirectory) {
+		File instance = worldDirectory.getAbsoluteFile().getParentFile();
+		for(int i=0; i<2 && instance!=null; i++) {
+			File config = new File(new File(instance, "config"), "thermionics_world.cfg");
+			if (config.isFile()) return config;
+			instance = instance.getParentFile();
+		}
+		return null;
+	}
+	
+	/**
+	 * Registers this mod's blocks, and its biomes along with them, into this JVM's block registry the way the game
+	 * would, and works out how each block's ID here maps to its ID in the world.
+	 */
+	private static int[] registerBlocks(Map<ResourceLocation, Integer> worldIds) {
+		TWBlocks.registerBlocks(new RegistryEvent.Register<>(new ResourceLocation("minecraft", "blocks"), ForgeRegistries.BLOCKS));
+		
+		int[] result = new int[4096];
+		Arrays.fill(result, -1);
+		for(ResourceLocation name : Block.REGISTRY.getKeys()) {
+			Integer worldId = worldIds.get(name);
+			if (worldId!=null) result[Block.getIdFromBlock(Block.REGISTRY.getObject(name))] = worldId;
+		}
+		return result;
+	}
+	
+	private static Map<ResourceLocation, Integer> readBlockIds(NBTTagCompound level) {
+		Map<ResourceLocation, Integer> result = new HashMap<>();
+		NBTTagList ids = level.getCompoundTag("FML").getCompoundTag("Registries").getCompoundTag("minecraft:blocks").getTagList("ids", 10);
+		for(int i=0; i<ids.tagCount(); i++) {
+			NBTTagCompound entry = ids.getCompoundTagAt(i);
+			result.put(new ResourceLocation(entry.getString("K")), entry.getInteger("V"));
+		}
+		return result;
+	}
+	
+	/**
+	 * Loads the generator settings saved for this dimension, or decides on them the same way the game would and saves
+	 * them, so the game carries on with whatever this generated. A brand-new dimension takes its settings from the
+	 * config, so without one there's nothing to decide them from.
+	 */
+	private static NeoHellGeneratorSettings loadSettings(File dimensionDirectory, File regionDirectory, boolean configured) throws IOException {
+		File dataDirectory = new File(dimensionDirectory, "data");
+		File settingsFile = new File(dataDirectory, NeoHellGeneratorSettings.DATA_NAME+".dat");
+		if (settingsFile.isFile()) {
+			NeoHellGeneratorSettings settings = new NeoHellGeneratorSettings(NeoHellGeneratorSettings.DATA_NAME);
+			settings.readFromNBT(readCompressed(settingsFile).getCompoundTag("data"));
+			return settings;
+		}
+		
+		File[] regions = regionDirectory.listFiles((dir, name)->name.endsWith(".mca"));
+		boolean legacy = regions!=null && regions.length>0;
+		if (!legacy && !configured) fail("Neo-Hell hasn't been generated in this world yet, and there's no config/thermionics_world.cfg next to it to take its settings from. Pass one with --config.");
+		NeoHellGeneratorSettings settings = legacy ?
+				NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_LEGACY) :
+				NeoHellGeneratorSettings.of(ThermionicsWorld.CONFIG_NEOHELL_GENERATOR_VERSION)
+					.withFastMath(ThermionicsWorld.CONFIG_NEOHELL_FAST_MATH)
+					.withBiomeBlending(ThermionicsWorld.CONFIG_NEOHELL_BIOME_BLENDING)
+					.withTerrainQuality(ThermionicsWorld.CONFIG_NEOHELL_TERRAIN_QUALITY);
+		if (!dataDirectory.isDirectory() && !dataDirectory.mkdirs()) throw new IOException("Couldn't create "+dataDirectory);
+		NBTTagCompound root = new NBTTagCompound();
+		root.setTag("data", settings.writeToNBT(new NBTTagCompound()));
+		try(OutputStream out = new FileOutputStream(settingsFile)) {
+			CompressedStreamTools.writeCompressed(root, out);
+		}
+		return settings;
+	}
+	
+	/**
+	 * Generates every chunk within radius of the center. Each region file is written by one thread from start to
+	 * finish, so no two threads ever share a file.
+	 */
+	private void run(int centerX, int centerZ, int radius, int threads) throws InterruptedException {
+		int minX = centerX - radius;
+		int minZ = centerZ - radius;
+		int maxX = centerX + radius;
+		int maxZ = centerZ + radius;
+		long total = (long)(radius*2 + 1) * (radius*2 + 1);
+		System.out.println(String.format(Locale.ROOT, "Generating %d chunks of Neo-Hell around chunk %d, %d on %d threads into %s",
+				total, centerX, centerZ, threads, regionDirectory));
+		
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		List<Future<?>> regions = new ArrayList<>();
+		for(int regionZ=minZ>>5; regionZ<=maxZ>>5; regionZ++) {
+			for(int regionX=minX>>5; regionX<=maxX>>5; regionX++) {
+				int x0 = Math.max(minX, regionX*PregenOrder.REGION_SIZE);
+				int z0 = Math.max(minZ, regionZ*PregenOrder.REGION_SIZE);
+				int x1 = Math.min(maxX, regionX*PregenOrder.REGION_SIZE + PregenOrder.REGION_SIZE-1);
+				int z1 = Math.min(maxZ, regionZ*PregenOrder.REGION_SIZE + PregenOrder.REGION_SIZE-1);
+				File file = new File(regionDirectory, "r."+regionX+"."+regionZ+".mca");
+				regions.add(workers.submit(()->{
+					writeRegion(file, x0, z0, x1, z1);
+					return null;
+				}));
+			}
+		}
+		workers.shutdown();
+		
+		long start = System.currentTimeMillis();
+		while(!workers.awaitTermination(REPORT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+			report(start, total);
+		}
+		for(Future<?> region : regions) {
+			try {
+				region.get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Couldn't finish a region file", e.getCause());
+			}
+		}
+		report(start, total);
+	}
+	
+	private void report(long start, long total) {
+		long done = generated.get() + skipped.get();
+		float seconds = (System.currentTimeMillis() - start) / 1000f;
+		System.out.println(String.format(Locale.ROOT, "%d of %d chunks (%.1f%%), %d already there; %.1f chunks/s",
+				done, total, done * 100f / total, skipped.get(), (seconds>0) ? generated.get() / seconds : 0f));
+	}
+	
+	private void writeRegion(File file, int x0, int z0, int x1, int z1) throws IOException {
+		RegionFile region = new RegionFile(file);
+		PalettedChunk blocks = new PalettedChunk();
+		byte[] biomes = new byte[16*16];
+		try {
+			for(int z=z0; z<=z1; z++) {
+				for(int x=x0; x<=x1; x++) {
+					if (region.isChunkSaved(x & 31, z & 31)) {
+						skipped.incrementAndGet();
+						continue;
+					}
+					
+					shaper.generateShape(x, z, blocks, biomes);
+					try(DataOutputStream out = region.getChunkDataOutputStream(x & 31, z & 31)) {
+						CompressedStreamTools.write(writeChunk(x, z, blocks, biomes), out);
+					}
+					generated.incrementAndGet();
+				}
+			}
+		} finally {
+			region.close();
+		}
+	}
+	
+	/**
+	 * Lays out a shaped chunk the way AnvilChunkLoader saves one, with the block IDs translated to the world's. The
+	 * chunk is left unlit and unpopulated for the game to finish off.
+	 */
+	private NBTTagCompound writeChunk(int chunkX, int chunkZ, PalettedChunk blocks, byte[] biomes) {
+		int[] heightMap = new int[16*16];
+		NBTTagList sections = new NBTTagList();
+		for(int sectionY=0; sectionY<ChunkProviderNeo.HEIGHT/16; sectionY++) {
+			byte[] ids = new byte[4096];
+			byte[] add = new byte[2048];
+			byte[] data = new byte[2048];
+			boolean empty = true;
+			boolean needsAdd = false;
+			for(int i=0; i<4096; i++) {
+				//Section order is y, z, x from most to least significant
+				int x = i & 15;
+				int z = (i >> 4) & 15;
+				int y = sectionY*16 + (i >> 8);
+				char state = blocks.get(ChunkPrimerAccess.index(x, y, z));
+				if (state==0) continue;
+				empty = false;
+				if (Block.BLOCK_STATE_IDS.getByValue(state).getLightOpacity()>0) heightMap[z*16 + x] = Math.max(heightMap[z*16 + x], y+1);
+				
+				int blockId = worldBlockIds[state >> 4];
+				if (blockId<0) throw new IllegalStateException("The world has no ID for "+Block.getBlockById(state >> 4).getRegistryName());
+				ids[i] = (byte)blockId;
+				if (blockId>255) {
+					add[i >> 1] |= (blockId >> 8 & 15) << ((i & 1) << 2);
+					needsAdd = true;
+				}
+				data[i >> 1] |= (state & 15) << ((i & 1) << 2);
+			}
+			if (empty) continue;
+			
+			NBTTagCompound section = new NBTTagCompound();
+			section.setByte("Y", (byte)sectionY);
+			section.setByteArray("Blocks", ids);
+			if (needsAdd) section.setByteArray("Add", add);
+			section.setByteArray("Data", data);
+			section.setByteArray("BlockLight", new byte[2048]);
+			section.setByteArray("SkyLight", new byte[2048]);
+			sections.appendTag(section);
+		}
+		
+		NBTTagCompound level = new NBTTagCompound();
+		level.setByte("V", (byte)1);
+		level.setInteger("xPos", chunkX);
+		level.setInteger("zPos", chunkZ);
+		level.setLong("LastUpdate", 0L);
+		level.setIntArray("HeightMap", heightMap);
+		level.setBoolean("TerrainPopulated", false);
+		level.setBoolean("LightPopulated", false);
+		level.setLong("InhabitedTime", 0L);
+		level.setTag("Sections", sections);
+		level.setByteArray("Biomes", biomes.clone());
+		level.setTag("Entities", new NBTTagList());
+		level.setTag("TileEntities", new NBTTagList());
+		
+		NBTTagCompound root = new NBTTagCompound();
+		root.setInteger("DataVersion", DATA_VERSION);
+		root.setTag("Level", level);
+		return root;
+	}
+	
+	private static NBTTagCompound readCompressed(File file) throws IOException {
+		try(InputStream in = new FileInputStream(file)) {
+			return CompressedStreamTools.readCompressed(in);
+		}
+	}
+	
+	private static long parseLong(String s) {
+		try {
+			return Long.parseLong(s);
+		} catch (NumberFormatException e) {
+			fail("\""+s+"\" isn't a number.\n"+USAGE);
+			return 0;
+		}
+	}
+	
+	private static void fail(String message) {
+		System.err.println(message);
+		System.exit(1);
+	}
+}
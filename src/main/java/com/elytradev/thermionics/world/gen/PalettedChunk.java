@@ -0,0 +1,207 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.Arrays;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Holds a whole chunk of state IDs, in ChunkPrimer's layout, at 4 or 8 bits per block instead of 16. A shaped
+ * Neo-Hell chunk rarely has more than about ten different states in it, so most fit in a quarter of the 128 KB a
+ * ChunkPrimer takes. Chunks that somehow need more than 256 states are kept uncompressed. A PalettedChunk can be
+ * loaded over and over, reusing its storage, so it pools well; see {@link ResettingPool}.
+ */
+public class PalettedChunk {
+	public static final int VOLUME = 16*16*ChunkProviderNeo.HEIGHT;
+	private static final IBlockState AIR = Blocks.AIR.getDefaultState();
+	
+	private final char[] palette = new char[256];
+	private int paletteSize = 0;
+	/** Bits per block: 4, 8, or 16 for uncompressed */
+	private int bits = 4;
+	private byte[] storage;
+	private char[] wideStorage;
+	
+	public PalettedChunk() {
+		clear();
+	}
+	
+	/**
+	 * Empties this chunk back out to all air, keeping its storage around to be loaded into again.
+	 */
+	public void clear() {
+		paletteSize = 1;
+		palette[0] = (char)Block.BLOCK_STATE_IDS.get(AIR);
+		bits = 4;
+		if (storage==null) {
+			storage = new byte[VOLUME/2];
+		} else {
+			Arrays.fill(storage, (byte)0);
+		}
+	}
+	
+	/**
+	 * Replaces this chunk's contents with a copy of the given state IDs, which are laid out like ChunkPrimer's.
+	 */
+	public void load(char[] blocks) {
+		paletteSize = 0;
+		int lastIndex = -1;
+		char lastId = 0;
+		for(int i=0; i<VOLUME; i++) {
+			char id = blocks[i];
+			if (lastIndex>=0 && id==lastId) continue;
+			lastIndex = indexOf(id, paletteSize);
+			lastId = id;
+			if (lastIndex<0) {
+				if (paletteSize==palette.length) {
+					paletteSize = -1;
+					break;
+				}
+				lastIndex = paletteSize;
+				palette[paletteSize++] = id;
+			}
+		}
+		
+		if (paletteSize<0) {
+			//Too many states to bother compressing
+			bits = 16;
+			if (wideStorage==null) wideStorage = new char[VOLUME];
+			System.arraycopy(blocks, 0, wideStorage, 0, VOLUME);
+			return;
+		}
+		
+		bits = (paletteSize<=16) ? 4 : 8;
+		int length = VOLUME * bits / 8;
+		if (storage==null || storage.length<length) storage = new byte[length];
+		
+		lastIndex = 0;
+		lastId = palette[0];
+		for(int i=0; i<VOLUME; i++) {
+			char id = blocks[i];
+			if (id!=lastId) {
+				lastIndex = indexOf(id, paletteSize);
+				lastId = id;
+			}
+			if (bits==8) {
+				storage[i] = (byte)lastIndex;
+			} else if ((i & 1)==0) {
+				storage[i >> 1] = (byte)lastIndex;
+			} else {
+				storage[i >> 1] |= (byte)(lastIndex << 4);
+			}
+		}
+	}
+	
+	private int indexOf(char id, int size) {
+		for(int i=0; i<size; i++) {
+			if (palette[i]==id) return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Gets the state ID at the given index, which is laid out like ChunkPrimer's; see {@link ChunkPrimerAccess#index(int, int, int)}.
+	 */
+	public char get(int index) {
+		switch(bits) {
+		case 4:
+			return palette[(storage[index >> 1] >> ((index & 1) << 2)) & 0x0F];
+		case 8:
+			return palette[storage[index] & 0xFF];
+		default:
+			return wideStorage[index];
+		}
+	}
+	
+	/** Gets how many different states are in this chunk */
+	public int getPaletteSize() {
+		return (bits==16) ? -1 : paletteSize;
+	}
+	
+	public int getBitsPerBlock() {
+		return bits;
+	}
+	
+	/** Gets how much block storage this chunk is holding onto right now, in bytes */
+	public int getStorageBytes() {
+		int bytes = (storage==null) ? 0 : storage.length;
+		if (wideStorage!=null) bytes += wideStorage.length*2;
+		return bytes;
+	}
+	
+	/**
+	 * Copies this chunk into a primer.
+	 */
+	public void writeTo(ChunkPrimer primer) {
+		char[] data = ChunkPrimerAccess.getData(primer);
+		if (data!=null) {
+			for(int i=0; i<VOLUME; i++) data[i] = get(i);
+			return;
+		}
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+					primer.setBlockState(x, y, z, Block.BLOCK_STATE_IDS.getByValue(get(ChunkPrimerAccess.index(x, y, z))));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Copies this chunk into a Chunk's block storage, the same way TerrainShaper does: sections are only created once
+	 * something other than air lands in them.
+	 */
+	public void writeTo(ExtendedBlockStorage[] sections, boolean storeSkylight) {
+		char airId = (char)Block.BLOCK_STATE_IDS.get(AIR);
+		char stateId = airId;
+		IBlockState state = AIR;
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				int column = ChunkPrimerAccess.index(x, 0, z);
+				for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+					char id = get(column+y);
+					ExtendedBlockStorage section = sections[y >> 4];
+					if (id==airId) {
+						if (section!=null) section.set(x, y & 15, z, AIR);
+						continue;
+					}
+					if (id!=stateId) {
+						stateId = id;
+						state = Block.BLOCK_STATE_IDS.getByValue(id);
+					}
+					if (section==null) {
+						section = new ExtendedBlockStorage(y & ~15, storeSkylight);
+						sections[y >> 4] = section;
+					}
+					section.set(x, y & 15, z, state);
+				}
+			}
+		}
+	}
+}
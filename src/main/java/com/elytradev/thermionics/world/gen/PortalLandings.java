@@ -0,0 +1,94 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+import net.minecraft.world.storage.MapStorage;
+
+/**
+ * The chunks players have most recently arrived in Neo-Hell at, which is wherever their portals lead. Idle pregen
+ * keeps the area around these generated, because arriving is when a player needs the most new chunks at once.
+ */
+public class PortalLandings extends WorldSavedData {
+	public static final String DATA_NAME = "thermionics_world_portals";
+	/** How many landings are remembered; older ones are forgotten first */
+	private static final int MAX_LANDINGS = 16;
+	/** Landings this close together, in chunks, count as the same portal */
+	private static final int SAME_PORTAL_DISTANCE = 2;
+	
+	/** Most recent first */
+	private final List<ChunkPos> landings = new ArrayList<>();
+	
+	public PortalLandings(String name) {
+		super(name);
+	}
+	
+	public static PortalLandings forWorld(World world) {
+		MapStorage storage = world.getPerWorldStorage();
+		PortalLandings landings = (PortalLandings) storage.getOrLoadData(PortalLandings.class, DATA_NAME);
+		if (landings==null) {
+			landings = new PortalLandings(DATA_NAME);
+			storage.setData(DATA_NAME, landings);
+		}
+		
+		return landings;
+	}
+	
+	public void record(int chunkX, int chunkZ) {
+		landings.removeIf(it->Math.abs(it.x - chunkX)<=SAME_PORTAL_DISTANCE && Math.abs(it.z - chunkZ)<=SAME_PORTAL_DISTANCE);
+		landings.add(0, new ChunkPos(chunkX, chunkZ));
+		while(landings.size()>MAX_LANDINGS) landings.remove(landings.size()-1);
+		markDirty();
+	}
+	
+	public List<ChunkPos> getLandings() {
+		return landings;
+	}
+	
+	@Override
+	public void readFromNBT(NBTTagCompound tag) {
+		landings.clear();
+		int[] positions = tag.getIntArray("landings");
+		for(int i=0; i+1<positions.length; i+=2) {
+			landings.add(new ChunkPos(positions[i], positions[i+1]));
+		}
+	}
+	
+	@Override
+	public NBTTagCompound writeToNBT(NBTTagCompound tag) {
+		int[] positions = new int[landings.size()*2];
+		for(int i=0; i<landings.size(); i++) {
+			positions[i*2] = landings.get(i).x;
+			positions[i*2+1] = landings.get(i).z;
+		}
+		tag.setIntArray("landings", positions);
+		return tag;
+	}
+}
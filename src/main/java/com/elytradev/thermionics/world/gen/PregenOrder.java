@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The order pregeneration visits a square of chunks in: a region file at a time, with the region files spiralling
+ * outwards from the one in the middle, and chunks row by row inside each region file. Chunks that are next to each
+ * other in the order share a region file and mostly share neighbours, which keeps both the region file cache and the
+ * chunks already loaded useful. The order only depends on the square, so an index into it is all that needs saving
+ * to pick up where a run left off.
+ */
+public class PregenOrder {
+	/** Width of a region file, in chunks */
+	public static final int REGION_SIZE = 32;
+	
+	private final int minX;
+	private final int minZ;
+	private final int maxX;
+	private final int maxZ;
+	private final int[] regionX;
+	private final int[] regionZ;
+	/** Index of the first chunk in each region; the last entry is the total number of chunks */
+	private final long[] regionStart;
+	
+	/**
+	 * Creates the order for every chunk within radius chunks of the center chunk, counting across or up and down, so
+	 * the square is 2*radius+1 chunks wide.
+	 */
+	public PregenOrder(int centerX, int centerZ, int radius) {
+		minX = centerX - radius;
+		minZ = centerZ - radius;
+		maxX = centerX + radius;
+		maxZ = centerZ + radius;
+		int centerRegionX = centerX >> 5;
+		int centerRegionZ = centerZ >> 5;
+		
+		List<int[]> regions = new ArrayList<>();
+		for(int z=minZ>>5; z<=maxZ>>5; z++) {
+			for(int x=minX>>5; x<=maxX>>5; x++) {
+				int dx = x - centerRegionX;
+				int dz = z - centerRegionZ;
+				int ring = Math.max(Math.abs(dx), Math.abs(dz));
+				regions.add(new int[] { x, z, ring, ringPosition(dx, dz, ring) });
+			}
+		}
+		regions.sort(Comparator.<int[]>comparingInt(it->it[2]).thenComparingInt(it->it[3]));
+		
+		regionX = new int[regions.size()];
+		regionZ = new int[regions.size()];
+		regionStart = new long[regions.size()+1];
+		for(int i=0; i<regions.size(); i++) {
+			regionX[i] = regions.get(i)[0];
+			regionZ[i] = regions.get(i)[1];
+			regionStart[i+1] = regionStart[i] + (long)width(i) * depth(i);
+		}
+	}
+	
+	/**
+	 * Numbers the spots around a square ring clockwise, starting from the -x,-z corner. Everything here is integer
+	 * math, so the order comes out the same on every machine.
+	 */
+	private static int ringPosition(int dx, int dz, int ring) {
+		if (ring==0) return 0;
+		if (dz==-ring) return dx + ring;
+		if (dx==ring) return 2*ring + (dz + ring);
+		if (dz==ring) return 4*ring + (ring - dx);
+		return 6*ring + (ring - dz);
+	}
+	
+	private int regionMinX(int region) { return Math.max(minX, regionX[region]*REGION_SIZE); }
+	private int regionMinZ(int region) { return Math.max(minZ, regionZ[region]*REGION_SIZE); }
+	private int width(int region) { return Math.min(maxX, regionX[region]*REGION_SIZE + REGION_SIZE-1) - regionMinX(region) + 1; }
+	private int depth(int region) { return Math.min(maxZ, regionZ[region]*REGION_SIZE + REGION_SIZE-1) - regionMinZ(region) + 1; }
+	
+	/** Gets how many chunks there are in the whole order */
+	public long size() {
+		return regionStart[regionStart.length-1];
+	}
+	
+	/**
+	 * Puts the chunk x and z coordinates of the chunk at the given index into dest.
+	 */
+	public void get(long index, int[] dest) {
+		if (index<0 || index>=size()) throw new IndexOutOfBoundsException("Index "+index+" is outside a pregen order of "+size()+" chunks");
+		
+		//Find the last region starting at or before the index
+		int low = 0;
+		int high = regionX.length-1;
+		while(low<high) {
+			int middle = (low + high + 1) >>> 1;
+			if (regionStart[middle]<=index) {
+				low = middle;
+			} else {
+				high = middle-1;
+			}
+		}
+		
+		int offset = (int)(index - regionStart[low]);
+		int width = width(low);
+		dest[0] = regionMinX(low) + offset % width;
+		dest[1] = regionMinZ(low) + offset / width;
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.WorldSavedData;
+import net.minecraft.world.storage.MapStorage;
+
+/**
+ * How far a Neo-Hell pregen run has got. This lives in the save's global data rather than in the dimension's, so the
+ * server can tell whether to pick a run back up without loading Neo-Hell to find out.
+ */
+public class PregenProgress extends WorldSavedData {
+	public static final String DATA_NAME = "thermionics_world_pregen";
+	
+	private boolean running = false;
+	private int centerX = 0;
+	private int centerZ = 0;
+	private int radius = 0;
+	private int msPerTick = 0;
+	/** Index into the run's {@link PregenOrder} of the next chunk to generate */
+	private long next = 0;
+	
+	public PregenProgress(String name) {
+		super(name);
+	}
+	
+	public static PregenProgress forServer(MinecraftServer server) {
+		MapStorage storage = server.getWorld(0).getMapStorage();
+		PregenProgress progress = (PregenProgress) storage.getOrLoadData(PregenProgress.class, DATA_NAME);
+		if (progress==null) {
+			progress = new PregenProgress(DATA_NAME);
+			storage.setData(DATA_NAME, progress);
+		}
+		
+		return progress;
+	}
+	
+	/**
+	 * Starts over on a new square of chunks.
+	 */
+	public void begin(int centerX, int centerZ, int radius, int msPerTick) {
+		this.running = true;
+		this.centerX = centerX;
+		this.centerZ = centerZ;
+		this.radius = radius;
+		this.msPerTick = msPerTick;
+		this.next = 0;
+		markDirty();
+	}
+	
+	public void setNext(long next) {
+		this.next = next;
+		markDirty();
+	}
+	
+	public void finish() {
+		this.running = false;
+		markDirty();
+	}
+	
+	public boolean isRunning() {
+		return running;
+	}
+	
+	public int getCenterX() {
+		return centerX;
+	}
+	
+	public int getCenterZ() {
+		return centerZ;
+	}
+	
+	public int getRadius() {
+		return radius;
+	}
+	
+	public int getMsPerTick() {
+		return msPerTick;
+	}
+	
+	public long getNext() {
+		return next;
+	}
+	
+	public PregenOrder createOrder() {
+		return new PregenOrder(centerX, centerZ, radius);
+	}
+	
+	@Override
+	public void readFromNBT(NBTTagCompound tag) {
+		running = tag.getBoolean("running");
+		centerX = tag.getInteger("centerX");
+		centerZ = tag.getInteger("centerZ");
+		radius = tag.getInteger("radius");
+		msPerTick = tag.getInteger("msPerTick");
+		next = tag.getLong("next");
+	}
+	
+	@Override
+	public NBTTagCompound writeToNBT(NBTTagCompound tag) {
+		tag.setBoolean("running", running);
+		tag.setInteger("centerX", centerX);
+		tag.setInteger("centerZ", centerZ);
+		tag.setInteger("radius", radius);
+		tag.setInteger("msPerTick", msPerTick);
+		tag.setLong("next", next);
+		return tag;
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.ChunkProviderServer;
+import net.minecraft.world.gen.IChunkGenerator;
+
+/**
+ * Generates and populates chunks on the server thread a chunk at a time, for pregen. The chunks it loads to do that
+ * are kept in a small window, and the oldest ones let go as it moves on.
+ */
+class PregenStep {
+	/** The server only saves and unloads 100 chunks a tick, so generating many more than that would pile them up */
+	static final int MAX_CHUNKS_PER_TICK = 64;
+	
+	private final int keepLoaded;
+	/** Chunks this step loaded, least recently used first */
+	private final LinkedHashMap<Long, Chunk> loaded;
+	
+	PregenStep(int keepLoaded) {
+		this.keepLoaded = keepLoaded;
+		this.loaded = new LinkedHashMap<>(keepLoaded*2, 0.75f, true);
+	}
+	
+	/**
+	 * Makes sure the chunk at x, z is generated and populated. A chunk is only populated once its +x, +z and +x+z
+	 * neighbours are loaded too, so those are loaded along with it.
+	 */
+	void generate(WorldServer world, int x, int z) {
+		ChunkProviderServer chunks = world.getChunkProvider();
+		for(int dz=0; dz<2; dz++) {
+			for(int dx=0; dx<2; dx++) {
+				load(world, chunks, x+dx, z+dz);
+			}
+		}
+	}
+	
+	/**
+	 * Queues up whichever of the chunks {@link #generate(WorldServer, int, int)} would need that don't exist yet, so
+	 * they're shaped off the server thread in the meantime.
+	 */
+	static void prefetch(ShapePipeline pipeline, ChunkProviderServer chunks, int x, int z) {
+		for(int dz=0; dz<2; dz++) {
+			for(int dx=0; dx<2; dx++) {
+				ShapePrefetcher.prefetchIfMissing(pipeline, chunks, x+dx, z+dz);
+			}
+		}
+	}
+	
+	@Nullable
+	static ShapePipeline getPipeline(WorldServer world) {
+		IChunkGenerator generator = world.getChunkProvider().chunkGenerator;
+		return (generator instanceof ChunkProviderNeo) ? ((ChunkProviderNeo)generator).getPipeline() : null;
+	}
+	
+	private void load(WorldServer world, ChunkProviderServer chunks, int x, int z) {
+		long key = ChunkPos.asLong(x, z);
+		if (loaded.get(key)!=null) return;
+		//Chunks something else has loaded are left for that something else to unload. Ones already on their way out
+		//are fair game, and peeking at the map directly leaves their unload alone if they're not needed.
+		Chunk existing = chunks.loadedChunks.get(key);
+		if (existing!=null && !existing.unloadQueued) return;
+		
+		loaded.put(key, chunks.provideChunk(x, z));
+		if (loaded.size()>keepLoaded) {
+			Iterator<Map.Entry<Long, Chunk>> oldest = loaded.entrySet().iterator();
+			unload(world, chunks, oldest.next().getValue());
+			oldest.remove();
+		}
+	}
+	
+	private static void unload(WorldServer world, ChunkProviderServer chunks, Chunk chunk) {
+		//Don't pull chunks out from under players who wandered in
+		if (world.getPlayerChunkMap().contains(chunk.x, chunk.z)) return;
+		chunks.queueUnload(chunk);
+	}
+	
+	/**
+	 * Lets go of every chunk this step is holding onto.
+	 */
+	void unloadAll(WorldServer world) {
+		for(Chunk chunk : loaded.values()) unload(world, world.getChunkProvider(), chunk);
+		loaded.clear();
+	}
+	
+	/**
+	 * Forgets about the chunks this step loaded without unloading them, for when their world's already gone.
+	 */
+	void forget() {
+		loaded.clear();
+	}
+}
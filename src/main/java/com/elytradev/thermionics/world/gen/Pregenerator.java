@@ -0,0 +1,238 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
+import com.elytradev.thermionics.world.ThermionicsWorld;
+
+import net.minecraft.command.ICommandSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.text.TextComponentString;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.gen.ChunkProviderServer;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.FMLCommonHandler;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+
+/**
+ * Generates a square of Neo-Hell ahead of time, a few milliseconds at the end of every server tick so the server keeps
+ * up while it works. Progress is saved as it goes, and a run that was cut short by the server stopping carries on
+ * from the same chunk next time the server starts.
+ */
+public class Pregenerator {
+	public static final int DEFAULT_MS_PER_TICK = 20;
+	/**
+	 * How many chunks past the current one get queued in the shape pipeline. Each can need up to four chunks shaped,
+	 * and this stays well within the pipeline's capacity so the queue doesn't push out the chunks needed soonest.
+	 */
+	private static final int PREFETCH_AHEAD = 24;
+	/**
+	 * How many chunks pregen keeps loaded once it's finished with them. Chunks are visited row by row through each
+	 * region file, so this holds a couple of rows' worth, which is enough that the neighbours a chunk needs to
+	 * populate are usually still around from the row before.
+	 */
+	private static final int KEEP_LOADED = PregenOrder.REGION_SIZE*3 + 8;
+	private static final long REPORT_INTERVAL_NANOS = 10_000_000_000L;
+	
+	@Nullable
+	private static Run run = null;
+	private static boolean checkedForResume = false;
+	
+	/**
+	 * Starts generating every chunk within radius chunks of the center, spending up to msPerTick milliseconds a tick.
+	 * Returns false without doing anything if a run is already underway.
+	 */
+	public static boolean start(MinecraftServer server, ICommandSender reportTo, int centerX, int centerZ, int radius, int msPerTick) {
+		checkedForResume = true;
+		if (run!=null) return false;
+		
+		PregenProgress progress = PregenProgress.forServer(server);
+		progress.begin(centerX, centerZ, radius, msPerTick);
+		run = new Run(progress, reportTo);
+		return true;
+	}
+	
+	/**
+	 * Stops the current run, if there is one, and forgets about it so it won't resume.
+	 */
+	public static boolean stop(MinecraftServer server) {
+		checkedForResume = true;
+		PregenProgress progress = PregenProgress.forServer(server);
+		boolean wasRunning = progress.isRunning();
+		progress.finish();
+		if (run!=null) {
+			run.unloadAll(server);
+			run = null;
+		}
+		return wasRunning;
+	}
+	
+	public static boolean isRunning() {
+		return run!=null;
+	}
+	
+	@Nullable
+	public static String getStatus() {
+		return (run==null) ? null : run.describe();
+	}
+	
+	@SubscribeEvent
+	public static void onServerTick(TickEvent.ServerTickEvent event) {
+		if (event.phase!=TickEvent.Phase.END) return;
+		MinecraftServer server = FMLCommonHandler.instance().getMinecraftServerInstance();
+		if (server==null) return;
+		
+		if (run==null) {
+			if (checkedForResume) return;
+			checkedForResume = true;
+			PregenProgress progress = PregenProgress.forServer(server);
+			if (!progress.isRunning()) return;
+			run = new Run(progress, server);
+			server.sendMessage(new TextComponentString("Resuming Neo-Hell pregen: "+run.describe()));
+		}
+		
+		run.generate(server, run.progress.getMsPerTick() * 1_000_000L);
+		if (run.isDone()) {
+			run.progress.finish();
+			run.unloadAll(server);
+			run.report(true);
+			run = null;
+		}
+	}
+	
+	@SubscribeEvent
+	public static void onWorldUnload(WorldEvent.Unload event) {
+		int dimension = event.getWorld().provider.getDimension();
+		//The overworld only goes away when the whole server does, and the next server could be a different save
+		if (dimension==0) {
+			checkedForResume = false;
+			run = null;
+		} else if (dimension==ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL && run!=null) {
+			//Forge lets Neo-Hell go while nobody's in it; the run carries on in the world the next tick loads back up
+			run.forgetWorld();
+		}
+	}
+	
+	private static class Run {
+		final PregenProgress progress;
+		final PregenOrder order;
+		final ICommandSender reportTo;
+		final PregenStep step = new PregenStep(KEEP_LOADED);
+		final int[] position = new int[2];
+		long prefetched = 0;
+		
+		final long startTime = System.nanoTime();
+		final long startIndex;
+		long lastReport = startTime;
+		
+		Run(PregenProgress progress, ICommandSender reportTo) {
+			this.progress = progress;
+			this.order = progress.createOrder();
+			this.reportTo = reportTo;
+			this.startIndex = progress.getNext();
+		}
+		
+		boolean isDone() {
+			return progress.getNext() >= order.size();
+		}
+		
+		/**
+		 * Generates chunks until the budget runs out or the square is finished.
+		 */
+		void generate(MinecraftServer server, long budgetNanos) {
+			long deadline = System.nanoTime() + budgetNanos;
+			//Asking for the world loads it back up if Forge let it go while it sat empty
+			WorldServer world = server.getWorld(ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL);
+			ShapePipeline pipeline = PregenStep.getPipeline(world);
+			
+			long next = progress.getNext();
+			for(int i=0; i<PregenStep.MAX_CHUNKS_PER_TICK && next<order.size() && System.nanoTime()<deadline; i++) {
+				if (pipeline!=null) prefetch(pipeline, world.getChunkProvider(), next);
+				
+				order.get(next, position);
+				step.generate(world, position[0], position[1]);
+				next++;
+			}
+			progress.setNext(next);
+			
+			if (System.nanoTime() - lastReport >= REPORT_INTERVAL_NANOS) report(false);
+		}
+		
+		private void prefetch(ShapePipeline pipeline, ChunkProviderServer chunks, long next) {
+			long end = Math.min(next + PREFETCH_AHEAD, order.size());
+			prefetched = Math.max(prefetched, next);
+			int[] ahead = new int[2];
+			for(; prefetched<end; prefetched++) {
+				order.get(prefetched, ahead);
+				PregenStep.prefetch(pipeline, chunks, ahead[0], ahead[1]);
+			}
+		}
+		
+		void unloadAll(MinecraftServer server) {
+			step.unloadAll(server.getWorld(ThermionicsWorld.CONFIG_DIMENSION_ID_NEOHELL));
+		}
+		
+		/**
+		 * Drops everything tied to the world that just unloaded: the chunks it was holding, and how far ahead it had
+		 * queued chunks in that world's pipeline.
+		 */
+		void forgetWorld() {
+			step.forget();
+			prefetched = 0;
+		}
+		
+		String describe() {
+			long next = progress.getNext();
+			long total = order.size();
+			float seconds = (System.nanoTime() - startTime) / 1_000_000_000f;
+			float rate = (seconds>0) ? (next - startIndex) / seconds : 0;
+			String eta = (rate>0) ? formatDuration((total - next) / rate) : "unknown";
+			return String.format(Locale.ROOT, "%d of %d chunks (%.1f%%) around chunk %d, %d, %.1f chunks/s, %s to go",
+					next, total, next * 100f / total, progress.getCenterX(), progress.getCenterZ(), rate, eta);
+		}
+		
+		void report(boolean finished) {
+			lastReport = System.nanoTime();
+			if (finished) {
+				float seconds = (lastReport - startTime) / 1_000_000_000f;
+				long generated = progress.getNext() - startIndex;
+				reportTo.sendMessage(new TextComponentString(String.format(Locale.ROOT, "Neo-Hell pregen finished: %d chunks in %s (%.1f chunks/s)",
+						generated, formatDuration(seconds), (seconds>0) ? generated / seconds : 0f)));
+			} else {
+				reportTo.sendMessage(new TextComponentString("Neo-Hell pregen: "+describe()));
+			}
+		}
+		
+		private static String formatDuration(float seconds) {
+			long whole = (long)seconds;
+			if (whole<60) return whole+"s";
+			if (whole<3600) return (whole/60)+"m "+(whole%60)+"s";
+			return (whole/3600)+"h "+(whole/60%60)+"m";
+		}
+	}
+}
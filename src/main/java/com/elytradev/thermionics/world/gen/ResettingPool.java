@@ -0,0 +1,74 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import net.minecraft.world.chunk.ChunkPrimer;
+
+/**
+ * A bounded pool of big, reusable generation buffers such as ChunkPrimers. Objects are reset as they're returned, so
+ * whatever acquire hands out is always as good as new. Any number of threads can share one pool.
+ */
+public class ResettingPool<T> {
+	private final Supplier<T> factory;
+	private final Consumer<T> reset;
+	private final int capacity;
+	private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	
+	/**
+	 * @param capacity how many idle objects to hang on to; anything released past that is left for the garbage collector
+	 */
+	public ResettingPool(Supplier<T> factory, Consumer<T> reset, int capacity) {
+		this.factory = factory;
+		this.reset = reset;
+		this.capacity = capacity;
+	}
+	
+	/** Creates a pool of ChunkPrimers which are cleared back to air as they're returned */
+	public static ResettingPool<ChunkPrimer> ofPrimers(int capacity) {
+		return new ResettingPool<>(ChunkPrimer::new, ChunkPrimerAccess::clear, capacity);
+	}
+	
+	public T acquire() {
+		T t = idle.poll();
+		if (t==null) return factory.get();
+		idleCount.decrementAndGet();
+		return t;
+	}
+	
+	public void release(T t) {
+		//Claim a slot before resetting, so threads releasing at once can't take the pool past capacity between them
+		if (idleCount.incrementAndGet()>capacity) {
+			idleCount.decrementAndGet();
+			return;
+		}
+		reset.accept(t);
+		idle.offer(t);
+	}
+}
@@ -23,12 +23,10 @@
  */
 package com.elytradev.thermionics.world.gen;
 
-import java.util.Random;
-
 public class ScaledNoiseField {
-	private long randomSeed;
-	private float scale;
-	Random random = new Random(0L);
+	private final long randomSeed;
+	private final float scale;
+	private final LatticeHash latticeHash;
 	//private BufferedImage sampler;
 	//private Image rescaled;
 	
@@ -41,9 +39,13 @@ public class ScaledNoiseField {
 	//private float[] data = new float[4];
 	
 	public ScaledNoiseField(long randomSeed, float scale) {
+		this(randomSeed, scale, LatticeHash.LEGACY);
+	}
+	
+	public ScaledNoiseField(long randomSeed, float scale, LatticeHash latticeHash) {
 		this.randomSeed = randomSeed;
 		this.scale = scale;
-		random.setSeed(randomSeed);
+		this.latticeHash = latticeHash;
 		//this.splorchX = random.nextInt(0x0000FFFF);
 		//this.splorchZ = random.nextInt(0x0000FFFF);
 	}
@@ -77,9 +79,7 @@ public class ScaledNoiseField {
 		float[] data = new float[2 * 2];
 		for(int zi=0; zi<2; zi++) {
 			for(int xi=0; xi<2; xi++) {
-				random.setSeed((randomSeed*31L) + hash(baseX+xi, baseZ+zi));
-				
-				float element = (float) random.nextFloat();
+				float element = latticeHash.toFloat((randomSeed*31L) + hash(baseX+xi, baseZ+zi));
 				data[zi*2+xi] = element;
 			}
 		}
@@ -121,6 +121,32 @@ public class ScaledNoiseField {
 		return (result + 1) / 2;
 	}
 	
+	/** Number of linear segments filterFast divides [-1..1] into */
+	private static final int FILTER_TABLE_SEGMENTS = 2048;
+	private static final float[] FILTER_TABLE = new float[FILTER_TABLE_SEGMENTS + 1];
+	static {
+		for(int i=0; i<=FILTER_TABLE_SEGMENTS; i++) {
+			FILTER_TABLE[i] = filter(-1f + i * (2f / FILTER_TABLE_SEGMENTS));
+		}
+	}
+	
+	/**
+	 * Approximates {@link #filter(float)} with linear interpolation over a lookup table instead of calling
+	 * Math.cos. The filter curve's second derivative never exceeds PI^2/2, so with 2048 segments the interpolation
+	 * error is at most (1/1024)^2/8 * PI^2/2, about 5.9e-7; with float rounding included the result is always within
+	 * 1e-6 of filter(a).
+	 */
+	public static float filterFast(float a) {
+		if (a<-1) a=-1;
+		if (a>1) a=1;
+		float position = (a + 1) * (FILTER_TABLE_SEGMENTS / 2);
+		int index = (int)position;
+		if (index>=FILTER_TABLE_SEGMENTS) index = FILTER_TABLE_SEGMENTS - 1;
+		float fraction = position - index;
+		
+		return FILTER_TABLE[index] + (FILTER_TABLE[index+1] - FILTER_TABLE[index]) * fraction;
+	}
+	
 	public float normalizeAgainstScale(float f) {
 		int integerPart = (int)(f/scale);
 		integerPart*=scale;
@@ -142,15 +168,22 @@ public class ScaledNoiseField {
 		int baseX = x + splorchX + (int)(scale/2);
 		int baseZ = z + splorchZ + (int)(scale/2);
 		
-		float[] data = recenter(baseX,baseZ);
+		//The same four corners recenter would produce, without the array
+		int latticeX = latticeCoord(baseX);
+		int latticeZ = latticeCoord(baseZ);
+		float nw = latticeHash.toFloat((randomSeed*31L) + hash(latticeX,   latticeZ  ));
+		float ne = latticeHash.toFloat((randomSeed*31L) + hash(latticeX+1, latticeZ  ));
+		float sw = latticeHash.toFloat((randomSeed*31L) + hash(latticeX,   latticeZ+1));
+		float se = latticeHash.toFloat((randomSeed*31L) + hash(latticeX+1, latticeZ+1));
+		
 		float xProgress = (baseX % scale) / scale;
 		if (baseX<0) xProgress+=1;
 		float zProgress = (baseZ % scale) / scale;
 		if (baseZ<0) zProgress+=1;
 		
 		//interpolate vertically
-		float west = weightedAverage(data[0], data[2], zProgress);
-		float east = weightedAverage(data[1], data[3], zProgress);
+		float west = weightedAverage(nw, sw, zProgress);
+		float east = weightedAverage(ne, se, zProgress);
 		
 		//interpolate horizontally and return the result
 		return weightedAverage(west, east, xProgress);
@@ -159,4 +192,111 @@ public class ScaledNoiseField {
 	public float getFiltered(int x, int z) {
 		return filter(get(x,z));
 	}
+	
+	/**
+	 * Fills dest with the noise values for a whole rectangle of blocks at once, such that
+	 * {@code dest[zi*width + xi] == get(x+xi, z+zi)}. The lattice is walked cell by cell, so each cell's corners are
+	 * calculated once, and each row only has to interpolate along x.
+	 */
+	public void fill(float[] dest, int x, int z, int width, int depth) {
+		int offset = (int)(scale/2);
+		
+		for(int zStart=0; zStart<depth; ) {
+			int latticeZ = latticeCoord(z + zStart + splorchZ + offset);
+			int zEnd = zStart+1;
+			while(zEnd<depth && latticeCoord(z + zEnd + splorchZ + offset)==latticeZ) zEnd++;
+			
+			for(int xStart=0; xStart<width; ) {
+				int latticeX = latticeCoord(x + xStart + splorchX + offset);
+				int xEnd = xStart+1;
+				while(xEnd<width && latticeCoord(x + xEnd + splorchX + offset)==latticeX) xEnd++;
+				
+				float nw = latticeHash.toFloat((randomSeed*31L) + hash(latticeX,   latticeZ  ));
+				float ne = latticeHash.toFloat((randomSeed*31L) + hash(latticeX+1, latticeZ  ));
+				float sw = latticeHash.toFloat((randomSeed*31L) + hash(latticeX,   latticeZ+1));
+				float se = latticeHash.toFloat((randomSeed*31L) + hash(latticeX+1, latticeZ+1));
+				for(int zi=zStart; zi<zEnd; zi++) {
+					int baseZ = z + zi + splorchZ + offset;
+					float zProgress = (baseZ % scale) / scale;
+					if (baseZ<0) zProgress+=1;
+					
+					//interpolate vertically once for the whole run
+					float west = weightedAverage(nw, sw, zProgress);
+					float east = weightedAverage(ne, se, zProgress);
+					
+					for(int xi=xStart; xi<xEnd; xi++) {
+						int baseX = x + xi + splorchX + offset;
+						float xProgress = (baseX % scale) / scale;
+						if (baseX<0) xProgress+=1;
+						
+						dest[zi*width + xi] = weightedAverage(west, east, xProgress);
+					}
+				}
+				
+				xStart = xEnd;
+			}
+			zStart = zEnd;
+		}
+	}
+	
+	/**
+	 * Fills dest with filtered noise values for a whole rectangle of blocks at once, such that
+	 * {@code dest[zi*width + xi] == getFiltered(x+xi, z+zi)}.
+	 */
+	public void fillFiltered(float[] dest, int x, int z, int width, int depth) {
+		fill(dest, x, z, width, depth);
+		for(int i=0; i<width*depth; i++) {
+			dest[i] = filter(dest[i]);
+		}
+	}
+	
+	/**
+	 * Like {@link #fillFiltered(float[], int, int, int, int)}, but filters with {@link #filterFast(float)}.
+	 */
+	public void fillFilteredFast(float[] dest, int x, int z, int width, int depth) {
+		fill(dest, x, z, width, depth);
+		for(int i=0; i<width*depth; i++) {
+			dest[i] = filterFast(dest[i]);
+		}
+	}
+	
+	/**
+	 * Finds the smallest and largest values {@link #get(int, int)} returns inside the given rectangle, give or take
+	 * float rounding in the blend. Within one lattice cell the blend only ever moves one way along each axis, so each
+	 * cell's share of the rectangle peaks at its corners, and only those are sampled.
+	 */
+	public void getBounds(float[] dest, int x, int z, int width, int depth) {
+		int offset = (int)(scale/2);
+		float min = Float.MAX_VALUE;
+		float max = -Float.MAX_VALUE;
+		
+		for(int zStart=0; zStart<depth; ) {
+			int latticeZ = latticeCoord(z + zStart + splorchZ + offset);
+			int zEnd = zStart+1;
+			while(zEnd<depth && latticeCoord(z + zEnd + splorchZ + offset)==latticeZ) zEnd++;
+			
+			for(int xStart=0; xStart<width; ) {
+				int latticeX = latticeCoord(x + xStart + splorchX + offset);
+				int xEnd = xStart+1;
+				while(xEnd<width && latticeCoord(x + xEnd + splorchX + offset)==latticeX) xEnd++;
+				
+				float nw = get(x+xStart, z+zStart);
+				float ne = get(x+xEnd-1, z+zStart);
+				float sw = get(x+xStart, z+zEnd-1);
+				float se = get(x+xEnd-1, z+zEnd-1);
+				min = Math.min(min, Math.min(Math.min(nw, ne), Math.min(sw, se)));
+				max = Math.max(max, Math.max(Math.max(nw, ne), Math.max(sw, se)));
+				
+				xStart = xEnd;
+			}
+			zStart = zEnd;
+		}
+		dest[0] = min;
+		dest[1] = max;
+	}
+	
+	private int latticeCoord(int coord) {
+		int base = (int) (coord/scale); if (coord<0) base-=1;
+		return base;
+	}
 }
@@ -23,12 +23,10 @@
  */
 package com.elytradev.thermionics.world.gen;
 
-import java.util.Random;
-
 public class ScaledNoiseVolume {
-	private long randomSeed;
-	private float scale;
-	Random random = new Random(0L);
+	private final long randomSeed;
+	private final float scale;
+	private final LatticeHash latticeHash;
 	
 	private int splorchX = 0;
 	private int splorchZ = 0;
@@ -41,9 +39,13 @@ public class ScaledNoiseVolume {
 	//private float[] data = new float[8];
 	
 	public ScaledNoiseVolume(long randomSeed, float scale) {
+		this(randomSeed, scale, LatticeHash.LEGACY);
+	}
+	
+	public ScaledNoiseVolume(long randomSeed, float scale, LatticeHash latticeHash) {
 		this.randomSeed = randomSeed;
 		this.scale = scale;
-		random.setSeed(randomSeed);
+		this.latticeHash = latticeHash;
 	}
 	
 	private static int pos(int x, int y, int z) {
@@ -64,44 +66,33 @@ public class ScaledNoiseVolume {
 	 * Recenters on the indicated absolute (block) coordinates
 	 */
 	public float[] recenter(int x, int y, int z) {
-		int baseX = (int) (x/scale);  if (x<0) baseX-=1;
-		int baseZ = (int) (z/scale);  if (z<0) baseZ-=1;
-		int baseY = (int) (y/scale);  if (y<0) baseY-=1;
-		
-		//if (baseX==popX && baseZ==popZ && baseY==popY) return;
-		
-		
 		float[] data = new float[2 * 2 * 2];
+		fillLattice(latticeCoord(x), latticeCoord(y), latticeCoord(z), data);
+		return data;
+	}
+	
+	private int latticeCoord(int coord) {
+		int base = (int) (coord/scale);  if (coord<0) base-=1;
+		return base;
+	}
+	
+	/**
+	 * Fills data with the eight lattice values at the corners of the cell whose lowest corner is (baseX, baseY, baseZ)
+	 */
+	private void fillLattice(int baseX, int baseY, int baseZ, float[] data) {
 		for(int zi=0; zi<2; zi++) {
 			for(int xi=0; xi<2; xi++) {
 				for(int yi=0; yi<2; yi++) {
 					long hash = randomSeed ^ hash(baseX+xi, baseY+yi, baseZ+zi);
 					
-					random.setSeed(hash);
-					float element = (float) random.nextFloat();
+					float element = latticeHash.toFloat(hash);
 					data[pos(xi,yi,zi)] = element;
 				}
 			}
 		}
-		
-		//popX = baseX;
-		//popZ = baseZ;
-		//popY = baseY;
-		return data;
 	}
 	
-
-	/**
-	 * Gets the interpolated noise value at the indicated absolute (block) coordinates
-	 * @return a unfiormly distributed value between 0 and 1
-	 */
-	public float get(int x, int y, int z) {
-		int baseX = x + splorchX;
-		int baseZ = z + splorchZ;
-		int baseY = y + splorchY;
-		
-		float[] data = recenter(baseX,baseY,baseZ);
-
+	private float interpolate(float[] data, int baseX, int baseY, int baseZ) {
 		float xProgress = baseX % scale / scale; if (baseX<0) xProgress+=1;
 		float zProgress = baseZ % scale / scale; if (baseZ<0) zProgress+=1;
 		float yProgress = baseY % scale / scale; if (baseY<0) yProgress+=1;
@@ -120,4 +111,182 @@ public class ScaledNoiseVolume {
 		//interpolate X and return the result
 		return ScaledNoiseField.weightedAverage(west, east, xProgress);
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Gets the interpolated noise value at the indicated absolute (block) coordinates
+	 * @return a unfiormly distributed value between 0 and 1
+	 */
+	public float get(int x, int y, int z) {
+		int baseX = x + splorchX;
+		int baseZ = z + splorchZ;
+		int baseY = y + splorchY;
+		
+		float[] data = recenter(baseX,baseY,baseZ);
+		return interpolate(data, baseX, baseY, baseZ);
+	}
+	
+	/**
+	 * Fills dest with the noise values for a whole box of blocks at once. Values are written x-major, then z, with y
+	 * varying fastest: {@code dest[(xi*depth + zi)*height + yi] == get(x+xi, y+yi, z+zi)}, which matches ChunkPrimer's
+	 * layout for a 16x256x16 volume. The lattice is walked cell by cell, so each cell's corners are calculated once
+	 * and each column only interpolates along its runs.
+	 */
+	public void fill(float[] dest, int x, int y, int z, int width, int height, int depth) {
+		fill(dest, x, y, z, width, height, depth, 1, 1);
+	}
+	
+	/**
+	 * Like {@link #fill(float[], int, int, int, int, int, int)}, but only samples every spacing blocks across and every
+	 * ySpacing blocks up: {@code dest[(xi*depth + zi)*height + yi] == get(x + xi*spacing, y + yi*ySpacing, z + zi*spacing)}.
+	 */
+	public void fill(float[] dest, int x, int y, int z, int width, int height, int depth, int spacing, int ySpacing) {
+		float[] data = new float[2 * 2 * 2];
+		
+		for(int xStart=0; xStart<width; ) {
+			int latticeX = latticeCoord(x + xStart*spacing + splorchX);
+			int xEnd = xStart+1;
+			while(xEnd<width && latticeCoord(x + xEnd*spacing + splorchX)==latticeX) xEnd++;
+			
+			for(int zStart=0; zStart<depth; ) {
+				int latticeZ = latticeCoord(z + zStart*spacing + splorchZ);
+				int zEnd = zStart+1;
+				while(zEnd<depth && latticeCoord(z + zEnd*spacing + splorchZ)==latticeZ) zEnd++;
+				
+				for(int yStart=0; yStart<height; ) {
+					int latticeY = latticeCoord(y + yStart*ySpacing + splorchY);
+					int yEnd = yStart+1;
+					while(yEnd<height && latticeCoord(y + yEnd*ySpacing + splorchY)==latticeY) yEnd++;
+					
+					fillLattice(latticeX, latticeY, latticeZ, data);
+					fillRun(dest, data, x, y, z, height, depth, spacing, ySpacing, xStart, xEnd, yStart, yEnd, zStart, zEnd);
+					
+					yStart = yEnd;
+				}
+				zStart = zEnd;
+			}
+			xStart = xEnd;
+		}
+	}
+	
+	/**
+	 * Fills in every sample of one lattice cell (or the part of it inside the fill region) from its corner data.
+	 */
+	private void fillRun(float[] dest, float[] data, int x, int y, int z, int height, int depth, int spacing, int ySpacing,
+			int xStart, int xEnd, int yStart, int yEnd, int zStart, int zEnd) {
+		for(int xi=xStart; xi<xEnd; xi++) {
+			int baseX = x + xi*spacing + splorchX;
+			float xProgress = baseX % scale / scale; if (baseX<0) xProgress+=1;
+			
+			for(int zi=zStart; zi<zEnd; zi++) {
+				int baseZ = z + zi*spacing + splorchZ;
+				float zProgress = baseZ % scale / scale; if (baseZ<0) zProgress+=1;
+				
+				//interpolate Z once for the whole run
+				float uwest =ScaledNoiseField.weightedAverage(data[pos(0,1,0)], data[pos(0,1,1)], zProgress);
+				float ueast =ScaledNoiseField.weightedAverage(data[pos(1,1,0)], data[pos(1,1,1)], zProgress);
+				
+				float lwest =ScaledNoiseField.weightedAverage(data[pos(0,0,0)], data[pos(0,0,1)], zProgress);
+				float least =ScaledNoiseField.weightedAverage(data[pos(1,0,0)], data[pos(1,0,1)], zProgress);
+				
+				int column = (xi*depth + zi)*height;
+				for(int yi=yStart; yi<yEnd; yi++) {
+					int baseY = y + yi*ySpacing + splorchY;
+					float yProgress = baseY % scale / scale; if (baseY<0) yProgress+=1;
+					
+					float west = ScaledNoiseField.weightedAverage(lwest, uwest, yProgress);
+					float east = ScaledNoiseField.weightedAverage(least, ueast, yProgress);
+					
+					dest[column + yi] = ScaledNoiseField.weightedAverage(west, east, xProgress);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Creates a new Sampler for this volume. Samplers hold on to the corners of the last lattice cell they sampled,
+	 * so runs of samples inside one cell don't recalculate them. A Sampler isn't thread-safe; use one per thread.
+	 */
+	public Sampler sampler() {
+		return new Sampler();
+	}
+	
+	/**
+	 * A view of a ScaledNoiseVolume which caches the current lattice cell. Produces exactly the same values as
+	 * {@link ScaledNoiseVolume#get(int, int, int)}, without allocating anything per sample.
+	 */
+	public class Sampler {
+		private final float[] data = new float[2 * 2 * 2];
+		private boolean populated = false;
+		private int cellX;
+		private int cellY;
+		private int cellZ;
+		
+		private Sampler() {}
+		
+		/**
+		 * Gets the interpolated noise value at the indicated absolute (block) coordinates
+		 * @return a uniformly distributed value between 0 and 1
+		 */
+		public float get(int x, int y, int z) {
+			int baseX = x + splorchX;
+			int baseZ = z + splorchZ;
+			int baseY = y + splorchY;
+			
+			int latticeX = latticeCoord(baseX);
+			int latticeY = latticeCoord(baseY);
+			int latticeZ = latticeCoord(baseZ);
+			if (!populated || latticeX!=cellX || latticeY!=cellY || latticeZ!=cellZ) {
+				fillLattice(latticeX, latticeY, latticeZ, data);
+				cellX = latticeX;
+				cellY = latticeY;
+				cellZ = latticeZ;
+				populated = true;
+			}
+			
+			return interpolate(data, baseX, baseY, baseZ);
+		}
+		
+		/**
+		 * Finds the smallest and largest values get returns inside the given box, give or take float rounding. Within
+		 * one lattice cell, get blends trilinearly between the corners, which only ever moves one way along each
+		 * axis; so the box is split up along the lattice, and only the corners of each piece are sampled.
+		 */
+		public void getBounds(float[] dest, int x, int y, int z, int width, int height, int depth) {
+			float min = Float.MAX_VALUE;
+			float max = -Float.MAX_VALUE;
+			
+			for(int xStart=0; xStart<width; ) {
+				int xEnd = runEnd(x, xStart, width, splorchX);
+				for(int zStart=0; zStart<depth; ) {
+					int zEnd = runEnd(z, zStart, depth, splorchZ);
+					for(int yStart=0; yStart<height; ) {
+						int yEnd = runEnd(y, yStart, height, splorchY);
+						
+						for(int corner=0; corner<8; corner++) {
+							float value = get(
+									x + (((corner & 1)==0) ? xStart : xEnd-1),
+									y + (((corner & 2)==0) ? yStart : yEnd-1),
+									z + (((corner & 4)==0) ? zStart : zEnd-1));
+							min = Math.min(min, value);
+							max = Math.max(max, value);
+						}
+						
+						yStart = yEnd;
+					}
+					zStart = zEnd;
+				}
+				xStart = xEnd;
+			}
+			dest[0] = min;
+			dest[1] = max;
+		}
+		
+		/** Finds where the run of blocks starting at start, along one axis, leaves its lattice cell */
+		private int runEnd(int origin, int start, int length, int splorch) {
+			int lattice = latticeCoord(origin + start + splorch);
+			int end = start+1;
+			while(end<length && latticeCoord(origin + end + splorch)==lattice) end++;
+			return end;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * A ChunkPrimer that reads and writes a Chunk's block storage instead of its own array, for handing to map generators
+ * once a chunk has already been shaped straight into its sections. One SectionPrimer can be pointed at chunk after
+ * chunk, so it's only worth keeping one per thread.
+ */
+public class SectionPrimer extends ChunkPrimer {
+	private static final IBlockState AIR = Blocks.AIR.getDefaultState();
+	
+	private ExtendedBlockStorage[] sections;
+	private boolean storeSkylight;
+	
+	/**
+	 * Points this primer at the given chunk's sections; any new ones it creates will store skylight if storeSkylight
+	 * is set.
+	 */
+	public SectionPrimer wrap(Chunk chunk, boolean storeSkylight) {
+		this.sections = chunk.getBlockStorageArray();
+		this.storeSkylight = storeSkylight;
+		return this;
+	}
+	
+	@Override
+	public IBlockState getBlockState(int x, int y, int z) {
+		ExtendedBlockStorage section = sections[y >> 4];
+		return (section==null) ? AIR : section.get(x, y & 15, z);
+	}
+	
+	@Override
+	public void setBlockState(int x, int y, int z, IBlockState state) {
+		ExtendedBlockStorage section = sections[y >> 4];
+		if (section==null) {
+			if (state==AIR) return;
+			section = new ExtendedBlockStorage(y & ~15, storeSkylight);
+			sections[y >> 4] = section;
+		}
+		section.set(x, y & 15, z, state);
+	}
+	
+	@Override
+	public int findGroundBlockIdx(int x, int z) {
+		for(int y=ChunkProviderNeo.HEIGHT-1; y>=0; y--) {
+			if (getBlockState(x, y, z)!=AIR) return y;
+		}
+		return 0;
+	}
+}
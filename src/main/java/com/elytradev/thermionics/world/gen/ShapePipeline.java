@@ -0,0 +1,252 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Shapes chunks on a pool of worker threads ahead of when they're needed, so the server thread only has to copy
+ * the finished blocks into a Chunk. Shaping a chunk only depends on the seed and the chunk's position, so a chunk
+ * shaped here is exactly the same as one shaped on the server thread; anything that wasn't shaped in time is simply
+ * shaped on the spot like before.
+ */
+public class ShapePipeline {
+	private static final AtomicInteger WORKER_COUNT = new AtomicInteger();
+	
+	private final TerrainShaper shaper;
+	private final ExecutorService workers;
+	/** How many chunks can be queued or waiting to be taken at once */
+	private final int capacity;
+	/** Queued and finished chunks by ChunkPos.asLong, oldest first. Guarded by itself. */
+	private final LinkedHashMap<Long, Future<Shaped>> pending = new LinkedHashMap<>();
+	private final ResettingPool<PalettedChunk> chunks;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	public ShapePipeline(TerrainShaper shaper, int threads, int capacity) {
+		this.shaper = shaper;
+		this.capacity = capacity;
+		this.chunks = new ResettingPool<>(PalettedChunk::new, PalettedChunk::clear, capacity);
+		this.workers = Executors.newFixedThreadPool(threads, (it)->{
+			Thread thread = new Thread(it, "Neo-Hell shaper #"+WORKER_COUNT.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setPriority(Thread.NORM_PRIORITY-1);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Queues a chunk to be shaped if it isn't already. When the pipeline is full, the chunk that's been waiting the
+	 * longest is dropped to make room. Does nothing once the pipeline has been shut down.
+	 */
+	public void prefetch(int chunkX, int chunkZ) {
+		prefetch(chunkX, chunkZ, null);
+	}
+	
+	/**
+	 * Like {@link #prefetch(int, int)}, but the worker first asks savedChunks whether the chunk has been saved already,
+	 * and if so leaves it alone, since it'll be loaded rather than generated. That keeps the disk lookups off the
+	 * calling thread.
+	 */
+	public void prefetch(int chunkX, int chunkZ, @Nullable SavedChunks savedChunks) {
+		long key = ChunkPos.asLong(chunkX, chunkZ);
+		synchronized(pending) {
+			if (workers.isShutdown() || pending.containsKey(key)) return;
+			
+			while(pending.size()>=capacity) {
+				Iterator<Map.Entry<Long, Future<Shaped>>> oldest = pending.entrySet().iterator();
+				discard(oldest.next().getValue());
+				oldest.remove();
+				evictions.increment();
+			}
+			
+			Job job = new Job(key, ()->{
+				if (savedChunks!=null && savedChunks.isChunkGeneratedAt(chunkX, chunkZ)) return null;
+				Shaped shaped = new Shaped(chunks.acquire());
+				shaper.generateShape(chunkX, chunkZ, shaped.blocks, shaped.biomes);
+				return shaped;
+			});
+			pending.put(key, job);
+			workers.execute(job);
+		}
+	}
+	
+	/**
+	 * Takes the shaped chunk at the given position out of the pipeline, waiting for it to finish if it's underway, or
+	 * shaping it on the calling thread if no worker has got to it yet. Returns null if the chunk was never queued, in which case the caller should shape it itself. Hand the result
+	 * back with {@link #release(Shaped)} once it's been copied out.
+	 */
+	@Nullable
+	public Shaped take(int chunkX, int chunkZ) {
+		Future<Shaped> future;
+		synchronized(pending) {
+			future = pending.remove(ChunkPos.asLong(chunkX, chunkZ));
+		}
+		if (future==null) {
+			misses.increment();
+			return null;
+		}
+		
+		//Workers take jobs oldest first, so a chunk needed right now could be queued behind a whole ring of prefetches.
+		//Rather than wait its turn it's shaped here, and the worker that gets to it later finds it already done.
+		boolean shapedHere = (future instanceof Job) && ((Job)future).runHere();
+		try {
+			Shaped shaped = future.get();
+			if (shaped!=null) {
+				if (shapedHere) {
+					misses.increment();
+				} else {
+					hits.increment();
+				}
+				return shaped;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			//Fall through and let the caller shape it; if it's going to throw, it'll throw there too
+		}
+		misses.increment();
+		return null;
+	}
+	
+	public void release(Shaped shaped) {
+		chunks.release(shaped.blocks);
+	}
+	
+	private void discard(Future<Shaped> future) {
+		if (future.cancel(false)) return;
+		if (future.isDone()) {
+			try {
+				Shaped shaped = future.get();
+				if (shaped!=null) release(shaped);
+			} catch (InterruptedException | ExecutionException e) {
+				//Nothing to give back
+			}
+		}
+		//If it's still running, its chunk is left for the garbage collector
+	}
+	
+	/**
+	 * Stops the workers and throws away anything that's still queued. The pipeline can't be used afterwards.
+	 */
+	public void shutdown() {
+		synchronized(pending) {
+			workers.shutdownNow();
+			pending.clear();
+		}
+	}
+	
+	/** Gets how many chunks can be queued or waiting to be taken at once */
+	public int getCapacity() { return capacity; }
+	/** Gets how many chunks were waiting in the pipeline when they were needed */
+	public long getHits() { return hits.sum(); }
+	/** Gets how many chunks had to be shaped on the spot, including queued ones no worker had started yet */
+	public long getMisses() { return misses.sum(); }
+	/** Gets how many chunks were shaped or queued but dropped before anyone needed them */
+	public long getEvictions() { return evictions.sum(); }
+	
+	public int getPendingCount() {
+		synchronized(pending) {
+			return pending.size();
+		}
+	}
+	
+	/**
+	 * Looks up whether chunks have been saved already. Called from the worker threads.
+	 */
+	public interface SavedChunks {
+		boolean isChunkGeneratedAt(int chunkX, int chunkZ);
+	}
+	
+	/**
+	 * A queued chunk, which takes itself back out of the pipeline if it turns out to be saved already.
+	 */
+	private class Job extends FutureTask<Shaped> {
+		private final long key;
+		/** Set by whichever thread runs the job, so it only ever runs once */
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		
+		Job(long key, Callable<Shaped> work) {
+			super(work);
+			this.key = key;
+		}
+		
+		@Override
+		public void run() {
+			if (claimed.compareAndSet(false, true)) super.run();
+		}
+		
+		/**
+		 * Runs the job on the calling thread, unless a worker has already started it. Returns whether it ran here.
+		 */
+		boolean runHere() {
+			if (!claimed.compareAndSet(false, true)) return false;
+			super.run();
+			return true;
+		}
+		
+		@Override
+		protected void done() {
+			if (isCancelled()) return;
+			try {
+				if (get()!=null) return;
+			} catch (InterruptedException | ExecutionException e) {
+				//Leave it for take, which shapes the chunk on the spot
+				return;
+			}
+			synchronized(pending) {
+				pending.remove(key, this);
+			}
+		}
+	}
+	
+	/**
+	 * A chunk's blocks and biome IDs, ready to be copied into a Chunk.
+	 */
+	public static class Shaped {
+		public final PalettedChunk blocks;
+		public final byte[] biomes = new byte[16*16];
+		
+		private Shaped(PalettedChunk blocks) {
+			this.blocks = blocks;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.gen.ChunkProviderServer;
+import net.minecraft.world.gen.IChunkGenerator;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.relauncher.Side;
+
+/**
+ * Watches players moving through Neo-Hell and queues up the chunks they're heading into in their generator's
+ * ShapePipeline, so the chunks are usually already shaped by the time the server asks for them. Forge only queues
+ * chunks that are already saved through its chunk IO threads, so for brand new chunks the players' own movement is
+ * the earliest warning there is.
+ */
+public class ShapePrefetcher {
+	/** How many ticks of a player's current speed to look ahead for the chunks they're about to need */
+	private static final int LOOKAHEAD_TICKS = 40;
+	
+	private final Map<EntityPlayer, Tracked> tracked = new WeakHashMap<>();
+	
+	@SubscribeEvent
+	public void onPlayerTick(TickEvent.PlayerTickEvent event) {
+		if (event.phase!=TickEvent.Phase.END || event.side!=Side.SERVER) return;
+		EntityPlayer player = event.player;
+		ShapePipeline pipeline = getPipeline(player.world);
+		if (pipeline==null) {
+			tracked.remove(player);
+			return;
+		}
+		
+		//Players move by packet on the server, so their motion fields can't be trusted; go by how far they really moved
+		long now = player.world.getTotalWorldTime();
+		Tracked last = tracked.get(player);
+		if (last==null || last.dimension!=player.dimension) {
+			last = new Tracked(player, now);
+			tracked.put(player, last);
+		}
+		long ticks = Math.max(1, now - last.time);
+		double aheadX = player.posX + (player.posX - last.x) / ticks * LOOKAHEAD_TICKS;
+		double aheadZ = player.posZ + (player.posZ - last.z) / ticks * LOOKAHEAD_TICKS;
+		last.x = player.posX;
+		last.z = player.posZ;
+		last.time = now;
+		
+		int chunkX = MathHelper.floor(aheadX) >> 4;
+		int chunkZ = MathHelper.floor(aheadZ) >> 4;
+		long key = ChunkPos.asLong(chunkX, chunkZ);
+		if (key==last.aheadChunk) return;
+		last.aheadChunk = key;
+		
+		WorldServer world = (WorldServer)player.world;
+		ChunkProviderServer chunks = world.getChunkProvider();
+		//Only as many rings as the pipeline holds, or the outer rings would push the inner ones back out of it
+		int radius = Math.min(world.getMinecraftServer().getPlayerList().getViewDistance(), ((int)Math.sqrt(pipeline.getCapacity()) - 1) / 2);
+		//Ring by ring outwards, so the chunks needed soonest get queued first
+		for(int ring=0; ring<=radius; ring++) {
+			for(int dx=-ring; dx<=ring; dx++) {
+				boolean edge = (dx==-ring || dx==ring);
+				for(int dz=-ring; dz<=ring; dz += edge ? 1 : ring*2) {
+					prefetchIfMissing(pipeline, chunks, chunkX + dx, chunkZ + dz);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Queues a chunk unless it's loaded or saved already. Only the loaded check happens here, by peeking at the map
+	 * rather than with getLoadedChunk, which would cancel the chunk's unload; the saved check means a trip to the
+	 * region file, so that's left to the pipeline's worker.
+	 */
+	static void prefetchIfMissing(ShapePipeline pipeline, ChunkProviderServer chunks, int chunkX, int chunkZ) {
+		if (chunks.loadedChunks.containsKey(ChunkPos.asLong(chunkX, chunkZ))) return;
+		pipeline.prefetch(chunkX, chunkZ, chunks.chunkLoader::isChunkGeneratedAt);
+	}
+	
+	@SubscribeEvent
+	public void onWorldUnload(WorldEvent.Unload event) {
+		ShapePipeline pipeline = getPipeline(event.getWorld());
+		if (pipeline!=null) pipeline.shutdown();
+	}
+	
+	@Nullable
+	private static ShapePipeline getPipeline(World world) {
+		if (!(world instanceof WorldServer)) return null;
+		IChunkGenerator generator = ((WorldServer)world).getChunkProvider().chunkGenerator;
+		if (!(generator instanceof ChunkProviderNeo)) return null;
+		return ((ChunkProviderNeo)generator).getPipeline();
+	}
+	
+	private static class Tracked {
+		final int dimension;
+		double x;
+		double z;
+		long time;
+		long aheadChunk;
+		
+		Tracked(EntityPlayer player, long time) {
+			this.dimension = player.dimension;
+			this.x = player.posX;
+			this.z = player.posZ;
+			this.time = time;
+			this.aheadChunk = Long.MIN_VALUE;
+		}
+	}
+}
@@ -0,0 +1,735 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import com.elytradev.thermionics.world.block.TWBlocks;
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+import com.elytradev.thermionics.world.gen.biome.BiomeRegistry;
+import com.elytradev.thermionics.world.gen.biome.NeoBiome;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Biomes;
+import net.minecraft.init.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.biome.BiomeProvider;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraftforge.fluids.BlockFluidBase;
+
+/**
+ * Lays down the raw shape of Neo-Hell chunks: a heightmapped floor, density-driven nougat above it, and pain pooled
+ * in the low spots. A TerrainShaper never changes after it's constructed, and all of its scratch space is
+ * per-thread, so any number of threads can shape chunks with the same TerrainShaper at once.
+ */
+public class TerrainShaper {
+	/** generateShape leaves the topmost layer of the world empty */
+	public static final int SHAPE_HEIGHT = ChunkProviderNeo.HEIGHT - 1;
+	
+	protected static final IBlockState AIR = Blocks.AIR.getDefaultState();
+	protected static final IBlockState BEDROCK = Blocks.BEDROCK.getDefaultState();
+	protected static final IBlockState NETHERRACK = Blocks.NETHERRACK.getDefaultState();
+	/** Where each material's state ID sits in a row of the material palette */
+	private static final int TERRAIN_SURFACE = 0;
+	private static final int TERRAIN_FILL = 1;
+	private static final int DENSITY_SURFACE = 2;
+	private static final int DENSITY_CORE = 3;
+	private static final byte HELL_ID = (byte)Biome.getIdForBiome(Biomes.HELL);
+	/** Slack for float rounding when deciding a whole run of blocks is certainly on one side of a density threshold */
+	private static final float CULL_EPSILON = 1e-5f;
+	/** Size of the boxes the density pass bounds before deciding what to sample */
+	private static final int CULL_SIZE = 8;
+	private static final int CULL_HEIGHT = 8;
+	/** How tall the pieces are when a chunk's density pass is split between threads */
+	private static final int SPLIT_HEIGHT = 64;
+	
+	/** Blend weights are worked out on a 5x5 grid of points 4 blocks apart, running up to the next chunk's corner */
+	private static final int BLEND_GRID_SIZE = 5;
+	private static final int BLEND_GRID_SPACING = 4;
+	/** TerrainQuality.COARSE samples every 4 blocks across and every 8 blocks up, from y=0 through y=256 */
+	private static final int COARSE_SPACING = 4;
+	private static final int COARSE_Y_SPACING = 8;
+	private static final int COARSE_SIZE = 16/COARSE_SPACING + 1;
+	private static final int COARSE_HEIGHT = (SHAPE_HEIGHT + COARSE_Y_SPACING - 1)/COARSE_Y_SPACING + 1;
+	
+	private final BiomeProvider biomes;
+	/** Every registered NeoBiome, indexed by its unsigned NEO_HELL ID */
+	private final NeoBiome[] biomesById = new NeoBiome[256];
+	private final boolean legacyBiomeArray;
+	/** The biomes blend weights are given for, or null if this shaper doesn't blend */
+	@Nullable
+	private final NeoBiome[] blendBiomes;
+	private final long ditherSeed;
+	private final IBlockState pain;
+	
+	/**
+	 * State IDs of every block generateShape places, looked up once so the per-block loop never touches the block
+	 * registry. A shaper only lives as long as its world, so the IDs can't be remapped underneath it.
+	 */
+	private final char airId;
+	private final char bedrockId;
+	private final char painId;
+	/** Material palette rows, indexed like biomesById; plain netherrack stands in for columns without a biome */
+	private final char[][] materialIdsById = new char[256][];
+	private final char[] netherrackIds;
+	
+	private final ScaledNoiseField noiseTerrainBase;
+	private final ScaledNoiseField noiseTerrainFine;
+	
+	private final ScaledNoiseVolume noiseVolumeBase;
+	private final ScaledNoiseVolume noiseVolumeFine;
+	
+	/**
+	 * How much density is left at each height. Density fades out over the top DENSITY_SCALING_LENGTH blocks so that
+	 * nougat doesn't get sheared off by the top of the world. Precomputed with the exact same arithmetic generateShape
+	 * used to do per block, so this changes nothing about the terrain.
+	 */
+	private static final float[] DENSITY_FALLOFF = new float[ChunkProviderNeo.HEIGHT];
+	static {
+		for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+			if (y>ChunkProviderNeo.DENSITY_SCALING_START) {
+				float densityProgress = (y - ChunkProviderNeo.DENSITY_SCALING_START) / (float)ChunkProviderNeo.DENSITY_SCALING_LENGTH;
+				DENSITY_FALLOFF[y] = (float)Math.cos(densityProgress*Math.PI/2f);
+			} else {
+				DENSITY_FALLOFF[y] = 1.0f;
+			}
+		}
+	}
+	
+	private final boolean fastMath;
+	private final TerrainQuality quality;
+	
+	private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+	private final ThreadLocal<Samplers> samplers;
+	
+	public TerrainShaper(long seed, BiomeProvider biomes, NeoHellGeneratorSettings settings) {
+		this(seed, biomes, settings, TWBlocks.FLUID_PAIN.getDefaultState().withProperty(BlockFluidBase.LEVEL, 3));
+	}
+	
+	/**
+	 * Creates a TerrainShaper which pools the given state instead of pain, for use where this mod's blocks might not
+	 * be registered.
+	 */
+	TerrainShaper(long seed, BiomeProvider biomes, NeoHellGeneratorSettings settings, IBlockState pain) {
+		this.biomes = biomes;
+		this.pain = pain;
+		this.fastMath = settings.isFastMath();
+		this.quality = settings.getTerrainQuality();
+		this.legacyBiomeArray = settings.getVersion() < NeoHellGeneratorSettings.VERSION_SPLITMIX;
+		for(NeoBiome biome : BiomeRegistry.NEO_HELL) {
+			if (biome.getId()>=0) {
+				biomesById[biome.getId() & 0xFF] = biome;
+				materialIdsById[biome.getId() & 0xFF] = materialRow(biome);
+			}
+		}
+		this.airId = stateId(AIR);
+		this.bedrockId = stateId(BEDROCK);
+		this.painId = stateId(pain);
+		char netherrack = stateId(NETHERRACK);
+		this.netherrackIds = new char[] { netherrack, netherrack, netherrack, netherrack };
+		//Blending needs the voronoi epicenters, which only BiomeProviderNeo has
+		this.blendBiomes = (settings.isBiomeBlending() && biomes instanceof BiomeProviderNeo) ?
+				((BiomeProviderNeo)biomes).getBlendBiomes() : null;
+		
+		Random random = new Random(seed);
+		LatticeHash latticeHash = settings.getLatticeHash();
+		this.noiseTerrainBase = new ScaledNoiseField(random.nextLong(), 64f, latticeHash);
+		this.noiseTerrainFine = new ScaledNoiseField(random.nextLong(), 32f, latticeHash);
+		this.noiseVolumeBase = new ScaledNoiseVolume(random.nextLong(), 40f, latticeHash);
+		this.noiseVolumeFine = new ScaledNoiseVolume(random.nextLong(), 20f, latticeHash);
+		this.ditherSeed = random.nextLong();
+		
+		this.samplers = ThreadLocal.withInitial(()->new Samplers(noiseVolumeBase.sampler(), noiseVolumeFine.sampler()));
+	}
+	
+	public void generateShape(int chunkX, int chunkZ, ChunkPrimer primer) {
+		generateShape(chunkX, chunkZ, primer, null);
+	}
+	
+	/**
+	 * Shapes a chunk, and if biomeArray isn't null, fills it in the way Chunk.getBiomeArray stores biomes. Biomes are
+	 * only looked up once per column for both.
+	 */
+	public void generateShape(int chunkX, int chunkZ, ChunkPrimer primer, @Nullable byte[] biomeArray) {
+		Scratch scratch = this.scratch.get();
+		
+		//Columns are written straight into the primer as state IDs, and only copied in a block at a time if its storage
+		//can't be reached
+		char[] blocks = ChunkPrimerAccess.getData(primer);
+		if (blocks!=null) {
+			shape(chunkX, chunkZ, blocks, biomeArray, scratch, null);
+			return;
+		}
+		
+		blocks = scratch.blocks;
+		shape(chunkX, chunkZ, blocks, biomeArray, scratch, null);
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<SHAPE_HEIGHT; y++) {
+					primer.setBlockState(x, y, z, Block.BLOCK_STATE_IDS.getByValue(blocks[ChunkPrimerAccess.index(x, y, z)]));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Shapes a chunk straight into a Chunk's block storage, skipping the ChunkPrimer altogether. Sections are only
+	 * created once something other than air lands in them, so the empty sky above the terrain never gets any; sections
+	 * that are already there are written over.
+	 */
+	public void generateShape(int chunkX, int chunkZ, ExtendedBlockStorage[] sections, boolean storeSkylight, @Nullable byte[] biomeArray) {
+		generateShape(chunkX, chunkZ, sections, storeSkylight, biomeArray, null);
+	}
+	
+	/**
+	 * Like {@link #generateShape(int, int, ExtendedBlockStorage[], boolean, byte[])}, but if columnPool isn't null and
+	 * is sitting idle, the heaviest part of the work is spread over its threads, for when one chunk is needed as soon as
+	 * possible. The chunk comes out the same either way.
+	 */
+	public void generateShape(int chunkX, int chunkZ, ExtendedBlockStorage[] sections, boolean storeSkylight, @Nullable byte[] biomeArray, @Nullable ForkJoinPool columnPool) {
+		Scratch scratch = this.scratch.get();
+		char[] blocks = scratch.blocks;
+		shape(chunkX, chunkZ, blocks, biomeArray, scratch, columnPool);
+		
+		//Runs of the same block are common, so only look a state up when the ID changes
+		char stateId = airId;
+		IBlockState state = AIR;
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				int column = ChunkPrimerAccess.index(x, 0, z);
+				for(int y=0; y<SHAPE_HEIGHT; y++) {
+					char id = blocks[column+y];
+					ExtendedBlockStorage section = sections[y >> 4];
+					if (id==airId) {
+						if (section!=null) section.set(x, y & 15, z, AIR);
+						continue;
+					}
+					if (id!=stateId) {
+						stateId = id;
+						state = Block.BLOCK_STATE_IDS.getByValue(id);
+					}
+					if (section==null) {
+						section = new ExtendedBlockStorage(y & ~15, storeSkylight);
+						sections[y >> 4] = section;
+					}
+					section.set(x, y & 15, z, state);
+				}
+				
+				//Nothing is ever shaped above SHAPE_HEIGHT, but a section that was already there still gets cleared
+				ExtendedBlockStorage top = sections[SHAPE_HEIGHT >> 4];
+				if (top!=null) {
+					for(int y=SHAPE_HEIGHT; y<ChunkProviderNeo.HEIGHT; y++) top.set(x, y & 15, z, AIR);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Shapes a chunk into a PalettedChunk, which can hold onto it in a fraction of the memory a ChunkPrimer needs.
+	 */
+	public void generateShape(int chunkX, int chunkZ, PalettedChunk dest, @Nullable byte[] biomeArray) {
+		Scratch scratch = this.scratch.get();
+		shape(chunkX, chunkZ, scratch.blocks, biomeArray, scratch, null);
+		dest.load(scratch.blocks);
+	}
+	
+	/**
+	 * Lays a chunk out as state IDs in ChunkPrimer's layout.
+	 */
+	private void shape(int chunkX, int chunkZ, char[] blocks, @Nullable byte[] biomeArray, Scratch scratch, @Nullable ForkJoinPool columnPool) {
+		float[] terrainBaseBuffer = scratch.terrainBase;
+		float[] terrainFineBuffer = scratch.terrainFine;
+		float[] densityBuffer = scratch.density;
+		byte[] biomeIds = scratch.biomeIds;
+		
+		fillBiomeIds(biomeIds, chunkX*16, chunkZ*16);
+		if (quality==TerrainQuality.COARSE) {
+			fillHeightsCoarse(noiseTerrainBase, terrainBaseBuffer, chunkX, chunkZ, scratch);
+			fillHeightsCoarse(noiseTerrainFine, terrainFineBuffer, chunkX, chunkZ, scratch);
+		} else if (fastMath) {
+			noiseTerrainBase.fillFilteredFast(terrainBaseBuffer, chunkX*16, chunkZ*16, 16, 16);
+			noiseTerrainFine.fillFilteredFast(terrainFineBuffer, chunkX*16, chunkZ*16, 16, 16);
+		} else {
+			noiseTerrainBase.fillFiltered(terrainBaseBuffer, chunkX*16, chunkZ*16, 16, 16);
+			noiseTerrainFine.fillFiltered(terrainFineBuffer, chunkX*16, chunkZ*16, 16, 16);
+		}
+		if (blendBiomes!=null) {
+			((BiomeProviderNeo)biomes).getBlendWeights(scratch.blendGrid(blendBiomes.length), chunkX*16, chunkZ*16,
+					BLEND_GRID_SIZE, BLEND_GRID_SIZE, BLEND_GRID_SPACING);
+		}
+		
+		//Settle every column's height, density scale and materials first, so the density pass knows what each block
+		//actually hinges on
+		for(int z=0; z<16; z++) {
+			for(int x=0; x<16; x++) {
+				float terrainHeightBase = 128f;
+				float densityScale = 1.0f;
+				
+				NeoBiome biome = biomesById[biomeIds[z*16+x] & 0xFF];
+				if (biome!=null) {
+					terrainHeightBase = biome.getBaseHeight();
+					densityScale = biome.getDensity();
+				}
+				
+				if (blendBiomes!=null) {
+					float[] weights = blendColumn(scratch, x, z);
+					terrainHeightBase = 0;
+					densityScale = 0;
+					for(int i=0; i<blendBiomes.length; i++) {
+						terrainHeightBase += weights[i] * blendBiomes[i].getBaseHeight();
+						densityScale += weights[i] * blendBiomes[i].getDensity();
+					}
+					
+					biome = ditherBiome(weights, chunkX*16+x, chunkZ*16+z);
+				}
+				
+				float terrainHeightHigh = terrainHeightBase / 4;
+				float terrainHeightLow = terrainHeightBase - terrainHeightHigh;
+
+				float columnHeight = 16;
+
+				columnHeight += terrainBaseBuffer[z*16+x]*terrainHeightLow;
+				columnHeight += terrainFineBuffer[z*16+x]*terrainHeightHigh;
+				
+				scratch.columnHeights[z*16+x] = (int)columnHeight;
+				scratch.densityScales[z*16+x] = densityScale;
+				scratch.materials[z*16+x] = materialIds(biome);
+			}
+		}
+		
+		if (quality==TerrainQuality.COARSE) {
+			fillDensityCoarse(chunkX, chunkZ, scratch);
+		} else {
+			fillDensityCulled(chunkX, chunkZ, scratch, columnPool);
+		}
+		
+		for(int z=0; z<16; z++) {
+			for(int x=0; x<16; x++) {
+				int columnHeight = scratch.columnHeights[z*16+x];
+				char[] materials = scratch.materials[z*16+x];
+				
+				int column = (x*16+z)*SHAPE_HEIGHT;
+				int index = ChunkPrimerAccess.index(x, 0, z);
+				blocks[index] = bedrockId;
+				
+				int surface = Math.min(columnHeight, SHAPE_HEIGHT-1);
+				for(int y=1; y<=surface; y++) {
+					char cur = airId;
+					if (densityBuffer[column+y]>0.1f) {
+						cur = (columnHeight-y < NeoBiome.SURFACE_DEPTH) ? materials[TERRAIN_SURFACE] : materials[TERRAIN_FILL];
+					} else { //Extremely low densities carve pits and caves into terrain
+						if (y<ChunkProviderNeo.SEA_LEVEL) cur=painId;
+					}
+					blocks[index+y] = cur;
+				}
+				
+				for(int y=Math.max(1, columnHeight+1); y<SHAPE_HEIGHT; y++) {
+					float density = densityBuffer[column+y];
+					char cur = airId;
+					if (density>0.5f) {
+						cur = ((density-0.5f)*2 < NeoBiome.DENSITY_SURFACE_THRESHOLD) ? materials[DENSITY_SURFACE] : materials[DENSITY_CORE];
+					} else {
+						if (y<ChunkProviderNeo.SEA_LEVEL) cur=painId;
+					}
+					blocks[index+y] = cur;
+				}
+			}
+		}
+		
+		if (biomeArray!=null) writeBiomeArray(chunkX, chunkZ, biomeIds, biomeArray);
+	}
+	
+	/**
+	 * Creates a pool of threads to help shape single chunks in a hurry, for passing to generateShape; or null if
+	 * threads is less than 1. The threads are daemons, and are only started once there's work for them.
+	 */
+	@Nullable
+	public static ForkJoinPool createColumnPool(int threads) {
+		if (threads<1) return null;
+		AtomicInteger workerCount = new AtomicInteger();
+		return new ForkJoinPool(threads, (pool)->{
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("Neo-Hell column worker #"+workerCount.incrementAndGet());
+			return thread;
+		}, null, false);
+	}
+	
+	private static char stateId(IBlockState state) {
+		return (char)Block.BLOCK_STATE_IDS.get(state);
+	}
+	
+	/** Builds the palette row for a biome's four materials */
+	private static char[] materialRow(NeoBiome biome) {
+		char[] row = new char[4];
+		row[TERRAIN_SURFACE] = stateId(biome.getTerrainMaterial(0));
+		row[TERRAIN_FILL] = stateId(biome.getTerrainMaterial(NeoBiome.SURFACE_DEPTH));
+		row[DENSITY_SURFACE] = stateId(biome.getDensityMaterial(0));
+		row[DENSITY_CORE] = stateId(biome.getDensityMaterial(NeoBiome.DENSITY_SURFACE_THRESHOLD));
+		return row;
+	}
+	
+	/** Gets the palette row for a column made of the given biome's materials, or of netherrack if it's null */
+	private char[] materialIds(@Nullable NeoBiome biome) {
+		if (biome==null) return netherrackIds;
+		if (biome.getId()<0) return materialRow(biome);
+		return materialIdsById[biome.getId() & 0xFF];
+	}
+	
+	/**
+	 * Mixes the two density noises into a block's final density.
+	 */
+	private static float density(float base, float fine, float densityScale, int y) {
+		float density = base;
+		density*= (densityScale*0.75f);
+		density = density + (fine-0.5f)*(densityScale*0.25f);
+		density *= DENSITY_FALLOFF[y];
+		if (density>1.0f) density=1.0f;
+		return density;
+	}
+	
+	/**
+	 * Gets the lowest (or with highest set, the highest) density any block in a run of one column from yStart up to
+	 * yEnd could have, given bounds on both noises there. Density is linear in each noise and in the falloff taken
+	 * separately, so the extremes are at the corners of the box the bounds make.
+	 */
+	private static float densityBound(float[] baseBounds, float[] fineBounds, float densityScale, int yStart, int yEnd, boolean highest) {
+		float result = highest ? -Float.MAX_VALUE : Float.MAX_VALUE;
+		for(float base : baseBounds) {
+			for(float fine : fineBounds) {
+				float unscaled = base*(densityScale*0.75f) + (fine-0.5f)*(densityScale*0.25f);
+				float low = unscaled * DENSITY_FALLOFF[yEnd-1];
+				float high = unscaled * DENSITY_FALLOFF[yStart];
+				result = highest ? Math.max(result, Math.max(low, high)) : Math.min(result, Math.min(low, high));
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Fills the density buffer for an EXACT chunk. Density only ever gets compared against 0.1 below a column's
+	 * surface and 0.5 above it, so the chunk is cut into small boxes, and each box's noise is bounded from the corners
+	 * of the lattice cells inside it first. Any run of a column that's certainly over 0.1 under the surface, or
+	 * certainly under 0.5 above it, gets a stand-in density on the right side of the line instead of being sampled;
+	 * only runs that could go either way are sampled block by block. Solid floors and open caverns are mostly skipped,
+	 * and the terrain comes out exactly the same.
+	 * 
+	 * <p>With a columnPool that's sitting idle, the boxes are split up into pieces for the pool's threads to
+	 * share. The pieces never touch each other's blocks, so this changes nothing about the terrain either.
+	 */
+	private void fillDensityCulled(int chunkX, int chunkZ, Scratch scratch, @Nullable ForkJoinPool pool) {
+		if (pool==null || pool.getActiveThreadCount()>0 || pool.hasQueuedSubmissions()) {
+			for(int xStart=0; xStart<16; xStart+=CULL_SIZE) {
+				for(int zStart=0; zStart<16; zStart+=CULL_SIZE) {
+					fillDensityCulled(chunkX, chunkZ, scratch, xStart, zStart, 0, SHAPE_HEIGHT);
+				}
+			}
+			return;
+		}
+		
+		//Every piece writes its own part of the density buffer, and this thread takes the first piece itself
+		List<ForkJoinTask<?>> pieces = new ArrayList<>();
+		for(int xStart=0; xStart<16; xStart+=CULL_SIZE) {
+			for(int zStart=0; zStart<16; zStart+=CULL_SIZE) {
+				for(int yStart=0; yStart<SHAPE_HEIGHT; yStart+=SPLIT_HEIGHT) {
+					if (xStart==0 && zStart==0 && yStart==0) continue;
+					int x = xStart, z = zStart, y = yStart;
+					pieces.add(pool.submit(()->fillDensityCulled(chunkX, chunkZ, scratch, x, z, y, Math.min(y+SPLIT_HEIGHT, SHAPE_HEIGHT))));
+				}
+			}
+		}
+		fillDensityCulled(chunkX, chunkZ, scratch, 0, 0, 0, Math.min(SPLIT_HEIGHT, SHAPE_HEIGHT));
+		for(ForkJoinTask<?> piece : pieces) piece.join();
+	}
+	
+	/**
+	 * Fills in density for one CULL_SIZE-square stack of boxes, from yFrom up to yTo.
+	 */
+	private void fillDensityCulled(int chunkX, int chunkZ, Scratch scratch, int xStart, int zStart, int yFrom, int yTo) {
+		float[] densityBuffer = scratch.density;
+		Samplers samplers = this.samplers.get();
+		float[] baseBounds = samplers.baseBounds;
+		float[] fineBounds = samplers.fineBounds;
+		ScaledNoiseVolume.Sampler baseSampler = samplers.base;
+		ScaledNoiseVolume.Sampler fineSampler = samplers.fine;
+		
+		for(int yStart=yFrom; yStart<yTo; yStart+=CULL_HEIGHT) {
+			int yEnd = Math.min(yStart+CULL_HEIGHT, yTo);
+			baseSampler.getBounds(baseBounds, chunkX*16 + xStart, yStart, chunkZ*16 + zStart, CULL_SIZE, yEnd-yStart, CULL_SIZE);
+			fineSampler.getBounds(fineBounds, chunkX*16 + xStart, yStart, chunkZ*16 + zStart, CULL_SIZE, yEnd-yStart, CULL_SIZE);
+			
+			for(int x=xStart; x<xStart+CULL_SIZE; x++) {
+				for(int z=zStart; z<zStart+CULL_SIZE; z++) {
+					int columnHeight = scratch.columnHeights[z*16+x];
+					float densityScale = scratch.densityScales[z*16+x];
+					int column = (x*16+z)*SHAPE_HEIGHT;
+					
+					//Up to and including the surface, only "over 0.1" matters; above it, only "over 0.5"
+					int surface = Math.max(yStart, Math.min(yEnd, columnHeight+1));
+					if (surface>yStart) {
+						if (densityBound(baseBounds, fineBounds, densityScale, yStart, surface, false) > 0.1f + CULL_EPSILON) {
+							Arrays.fill(densityBuffer, column+yStart, column+surface, 1.0f);
+						} else {
+							sampleDensity(baseSampler, fineSampler, densityBuffer, chunkX*16+x, chunkZ*16+z, column, densityScale, yStart, surface);
+						}
+					}
+					if (yEnd>surface) {
+						if (densityBound(baseBounds, fineBounds, densityScale, surface, yEnd, true) < 0.5f - CULL_EPSILON) {
+							Arrays.fill(densityBuffer, column+surface, column+yEnd, 0.0f);
+						} else {
+							sampleDensity(baseSampler, fineSampler, densityBuffer, chunkX*16+x, chunkZ*16+z, column, densityScale, surface, yEnd);
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	private static void sampleDensity(ScaledNoiseVolume.Sampler base, ScaledNoiseVolume.Sampler fine, float[] dest,
+			int blockX, int blockZ, int column, float densityScale, int yStart, int yEnd) {
+		for(int y=yStart; y<yEnd; y++) {
+			dest[column+y] = density(base.get(blockX, y, blockZ), fine.get(blockX, y, blockZ), densityScale, y);
+		}
+	}
+	
+	/**
+	 * Fills the density buffer for a COARSE chunk. Sampling the grid is already cheap, so nothing is culled.
+	 */
+	private void fillDensityCoarse(int chunkX, int chunkZ, Scratch scratch) {
+		float[] volumeBase = scratch.volumeBase();
+		float[] volumeFine = scratch.volumeFine();
+		fillVolumeCoarse(noiseVolumeBase, volumeBase, chunkX, chunkZ, scratch);
+		fillVolumeCoarse(noiseVolumeFine, volumeFine, chunkX, chunkZ, scratch);
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				float densityScale = scratch.densityScales[z*16+x];
+				int column = (x*16+z)*SHAPE_HEIGHT;
+				for(int y=0; y<SHAPE_HEIGHT; y++) {
+					scratch.density[column+y] = density(volumeBase[column+y], volumeFine[column+y], densityScale, y);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Fills a 16x16 heightmap buffer, z-major, by filtering the field at every fourth column and interpolating the
+	 * rest.
+	 */
+	private void fillHeightsCoarse(ScaledNoiseField field, float[] dest, int chunkX, int chunkZ, Scratch scratch) {
+		float[] grid = scratch.coarseHeights;
+		for(int gz=0; gz<COARSE_SIZE; gz++) {
+			for(int gx=0; gx<COARSE_SIZE; gx++) {
+				float value = field.get(chunkX*16 + gx*COARSE_SPACING, chunkZ*16 + gz*COARSE_SPACING);
+				grid[gz*COARSE_SIZE + gx] = (fastMath) ? ScaledNoiseField.filterFast(value) : ScaledNoiseField.filter(value);
+			}
+		}
+		
+		for(int z=0; z<16; z++) {
+			int nw = (z/COARSE_SPACING)*COARSE_SIZE;
+			float zProgress = (z%COARSE_SPACING) / (float)COARSE_SPACING;
+			for(int x=0; x<16; x++) {
+				int gx = nw + x/COARSE_SPACING;
+				float xProgress = (x%COARSE_SPACING) / (float)COARSE_SPACING;
+				dest[z*16+x] = ScaledNoiseField.planarAverage(grid[gx], grid[gx+1], grid[gx+COARSE_SIZE], grid[gx+COARSE_SIZE+1], xProgress, zProgress);
+			}
+		}
+	}
+	
+	/**
+	 * Fills a 16x255x16 density buffer, laid out like ScaledNoiseVolume.fill, by sampling the volume on the coarse
+	 * grid and interpolating trilinearly: first across, once per grid height in each column, then up the column.
+	 */
+	private void fillVolumeCoarse(ScaledNoiseVolume volume, float[] dest, int chunkX, int chunkZ, Scratch scratch) {
+		float[] grid = scratch.coarseVolume;
+		float[] column = scratch.coarseColumn;
+		volume.fill(grid, chunkX*16, 0, chunkZ*16, COARSE_SIZE, COARSE_HEIGHT, COARSE_SIZE, COARSE_SPACING, COARSE_Y_SPACING);
+		
+		for(int x=0; x<16; x++) {
+			float xProgress = (x%COARSE_SPACING) / (float)COARSE_SPACING;
+			for(int z=0; z<16; z++) {
+				float zProgress = (z%COARSE_SPACING) / (float)COARSE_SPACING;
+				int nw = ((x/COARSE_SPACING)*COARSE_SIZE + z/COARSE_SPACING)*COARSE_HEIGHT;
+				int ne = nw + COARSE_SIZE*COARSE_HEIGHT;
+				int sw = nw + COARSE_HEIGHT;
+				int se = ne + COARSE_HEIGHT;
+				for(int gy=0; gy<COARSE_HEIGHT; gy++) {
+					column[gy] = ScaledNoiseField.planarAverage(grid[nw+gy], grid[ne+gy], grid[sw+gy], grid[se+gy], xProgress, zProgress);
+				}
+				
+				int start = (x*16+z)*SHAPE_HEIGHT;
+				for(int y=0; y<SHAPE_HEIGHT; y++) {
+					int gy = y/COARSE_Y_SPACING;
+					dest[start+y] = ScaledNoiseField.weightedAverage(column[gy], column[gy+1], (y%COARSE_Y_SPACING) / (float)COARSE_Y_SPACING);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Interpolates the blend weights for one column of the chunk out of the coarse grid generateShape filled in.
+	 */
+	private float[] blendColumn(Scratch scratch, int x, int z) {
+		int count = blendBiomes.length;
+		float[] grid = scratch.blendGrid;
+		float[] result = scratch.blendColumn;
+		int gridX = x / BLEND_GRID_SPACING;
+		int gridZ = z / BLEND_GRID_SPACING;
+		float xProgress = (x % BLEND_GRID_SPACING) / (float)BLEND_GRID_SPACING;
+		float zProgress = (z % BLEND_GRID_SPACING) / (float)BLEND_GRID_SPACING;
+		int nw = (gridZ*BLEND_GRID_SIZE + gridX) * count;
+		int sw = nw + BLEND_GRID_SIZE*count;
+		for(int i=0; i<count; i++) {
+			result[i] = ScaledNoiseField.planarAverage(grid[nw+i], grid[nw+count+i], grid[sw+i], grid[sw+count+i], xProgress, zProgress);
+		}
+		return result;
+	}
+	
+	/**
+	 * Picks which biome's materials a column is made of. Columns pick at random in proportion to the blend weights, so
+	 * the materials of neighbouring biomes speckle into each other across a border instead of meeting in a line. The
+	 * pick is a fixed function of the column, so regenerating a chunk gives the same answer.
+	 */
+	private NeoBiome ditherBiome(float[] weights, int blockX, int blockZ) {
+		float threshold = LatticeHash.SPLITMIX.toFloat(ditherSeed + ScaledNoiseField.hash(blockX, blockZ));
+		int last = 0;
+		for(int i=0; i<blendBiomes.length; i++) {
+			if (weights[i]<=0) continue;
+			threshold -= weights[i];
+			if (threshold<0) return blendBiomes[i];
+			last = i;
+		}
+		//Weights can add up to a hair under 1
+		return blendBiomes[last];
+	}
+	
+	/**
+	 * Fills in a chunk's 16x16 biome array without shaping it.
+	 */
+	public void generateBiomes(int chunkX, int chunkZ, byte[] biomeArray) {
+		byte[] biomeIds = scratch.get().biomeIds;
+		fillBiomeIds(biomeIds, chunkX*16, chunkZ*16);
+		writeBiomeArray(chunkX, chunkZ, biomeIds, biomeArray);
+	}
+	
+	/**
+	 * Looks up the NEO_HELL biome ID of every column in the 16x16 area starting at blockX, blockZ, z-major.
+	 */
+	private void fillBiomeIds(byte[] dest, int blockX, int blockZ) {
+		if (biomes instanceof BiomeProviderNeo) {
+			((BiomeProviderNeo)biomes).getBiomeIds(dest, blockX, blockZ, 16, 16);
+			return;
+		}
+		
+		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+		for(int z=0; z<16; z++) {
+			for(int x=0; x<16; x++) {
+				dest[z*16+x] = BiomeProviderNeo.toBiomeId(biomes.getBiome(pos.setPos(blockX+x, 0, blockZ+z)));
+			}
+		}
+	}
+	
+	private void writeBiomeArray(int chunkX, int chunkZ, byte[] biomeIds, byte[] dest) {
+		if (legacyBiomeArray && (chunkX<0 || chunkZ<0)) {
+			//Legacy worlds recorded biomes from one chunk further out along negative axes. Their biome arrays have to
+			//keep doing that, or there'd be a visible seam wherever new chunks meet old ones.
+			fillBiomeIds(biomeIds, (chunkX<0 ? chunkX-1 : chunkX)*16, (chunkZ<0 ? chunkZ-1 : chunkZ)*16);
+		}
+		
+		for(int i=0; i<16*16; i++) {
+			dest[i] = (biomeIds[i]==BiomeProviderNeo.NO_BIOME) ? HELL_ID : biomeIds[i];
+		}
+	}
+	
+	/** Per-thread buffers that generateShape fills in bulk once per chunk */
+	private static class Scratch {
+		final float[] terrainBase = new float[16*16];
+		final float[] terrainFine = new float[16*16];
+		final float[] density = new float[16*16*SHAPE_HEIGHT];
+		final byte[] biomeIds = new byte[16*16];
+		final int[] columnHeights = new int[16*16];
+		final float[] densityScales = new float[16*16];
+		/** The state IDs of the materials each column is made of, from materialIds */
+		final char[][] materials = new char[16*16][];
+		/** Where chunks are laid out when there's no primer storage to write them into directly */
+		final char[] blocks = new char[16*ChunkProviderNeo.HEIGHT*16];
+		final float[] coarseHeights = new float[COARSE_SIZE*COARSE_SIZE];
+		final float[] coarseVolume = new float[COARSE_SIZE*COARSE_HEIGHT*COARSE_SIZE];
+		final float[] coarseColumn = new float[COARSE_HEIGHT];
+		float[] volumeBase;
+		float[] volumeFine;
+		float[] blendGrid;
+		float[] blendColumn;
+		
+		/**
+		 * Gets the buffer the base noise volume is interpolated into. Only COARSE chunks need it, so it's made on first
+		 * use.
+		 */
+		float[] volumeBase() {
+			if (volumeBase==null) volumeBase = new float[16*16*SHAPE_HEIGHT];
+			return volumeBase;
+		}
+		
+		/** Gets the buffer the fine noise volume is interpolated into, made on first use like volumeBase */
+		float[] volumeFine() {
+			if (volumeFine==null) volumeFine = new float[16*16*SHAPE_HEIGHT];
+			return volumeFine;
+		}
+		
+		/** Gets the grid of blend weights, making room for the given number of biomes first if need be */
+		float[] blendGrid(int count) {
+			if (blendGrid==null || blendColumn.length!=count) {
+				blendGrid = new float[BLEND_GRID_SIZE*BLEND_GRID_SIZE*count];
+				blendColumn = new float[count];
+			}
+			return blendGrid;
+		}
+	}
+	
+	/**
+	 * Per-thread noise samplers for the density pass. These are kept apart from Scratch so that threads helping out
+	 * with someone else's chunk don't need a whole Scratch of their own.
+	 */
+	private static class Samplers {
+		final ScaledNoiseVolume.Sampler base;
+		final ScaledNoiseVolume.Sampler fine;
+		final float[] baseBounds = new float[2];
+		final float[] fineBounds = new float[2];
+		
+		Samplers(ScaledNoiseVolume.Sampler base, ScaledNoiseVolume.Sampler fine) {
+			this.base = base;
+			this.fine = fine;
+		}
+	}
+}
@@ -24,10 +24,24 @@
 package com.elytradev.thermionics.world.gen;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
+import javax.annotation.Nullable;
+
 public class VoronoiClusterField<E> {
+	/** Number of squares along each side of the grid cellFor looks candidates up in */
+	private static final int INDEX_SIZE = 32;
+	/** Slack for rounding error when ruling an entry out of a grid square */
+	private static final double INDEX_EPSILON = 1e-6;
+	/** Slack for rounding error in noise values when proving a whole rectangle resolves to one cell-type */
+	private static final float NOISE_EPSILON = 1e-6f;
+	/** Number of voronoi cells each thread remembers the surrounding epicenters of */
+	private static final int EPICENTER_CACHE_SIZE = 16;
+	
 	private ArrayList<Entry<E>> cells = new ArrayList<Entry<E>>();
+	private volatile CellIndex<E> index = new CellIndex<E>(cells);
 	private long epicenterBase;
 	private ScaledNoiseField a;
 	private ScaledNoiseField b;
@@ -36,6 +50,8 @@ public class VoronoiClusterField<E> {
 	//private int centerZ;
 	public int scale;
 	
+	private final ThreadLocal<EpicenterCache> epicenterCache = ThreadLocal.withInitial(EpicenterCache::new);
+	
 	public VoronoiClusterField(long seed, int scale) {
 		Random baseRandom = new Random(seed);
 		epicenterBase = baseRandom.nextLong();
@@ -49,30 +65,33 @@ public class VoronoiClusterField<E> {
 	
 	public void registerCell(E e, float a, float b) {
 		cells.add( new Entry<E>(e, a, b) );
+		index = new CellIndex<E>(cells);
 	}
 	
+	/**
+	 * Swaps one cell-type for another, keeping its parameters. Entries are shared with the index other threads may be
+	 * reading, so the replaced ones are built afresh rather than changed in place.
+	 */
 	public void replaceCell(E old, E replacement) {
+		ArrayList<Entry<E>> replaced = new ArrayList<Entry<E>>(cells.size());
 		for(Entry<E> entry : cells) {
-			if (entry.e.equals(old)) entry.e = replacement;
+			replaced.add(entry.e.equals(old) ? new Entry<E>(replacement, entry.a, entry.b) : entry);
 		}
+		cells = replaced;
+		index = new CellIndex<E>(cells);
 	}
 	
 	public void unregisterCell(E e) {
-		cells.remove(e);
+		cells.removeIf((it)->it.e.equals(e));
+		index = new CellIndex<E>(cells);
 	}
 	
+	/**
+	 * Finds the registered cell-type whose parameters are nearest to (a, b) by Manhattan distance. Ties go to whichever
+	 * was registered first.
+	 */
 	public E cellFor(double a, double b) {
-		double bestDistance = Double.MAX_VALUE;
-		Entry<E> best = null;
-		for(Entry<E> entry : cells) {
-			double dist = Math.abs(entry.a-a) + Math.abs(entry.b-b);
-			if (best==null || dist<bestDistance) {
-				best = entry;
-				bestDistance = dist;
-			}
-		}
-		
-		return best.e;
+		return index.nearest(a, b);
 	}
 	
 	public static float rescale(int coord, int scale) {
@@ -110,31 +129,210 @@ public class VoronoiClusterField<E> {
 	}
 	
 	
+	/**
+	 * Gets the cell-type at the given block. Only the nearest epicenter's cell-type matters, so that epicenter is found
+	 * first, from cached positions, and its cell-type is the only one worked out.
+	 */
 	public E get(int x, int z) {
-		//float cx = rescale(x, scale);
-		//float cz = rescale(z, scale);
+		float rx = rescale(x, scale);
+		float rz = rescale(z, scale);
+		EpicenterCache cache = epicenterCache.get();
+		int base = cache.lookup(this, (int)rx, (int)rz);
+		int nearest = cache.nearest(base, rx, rz);
 		
-		Epicenter<E>[] centers = recenterOn(x, z);
-		float bestDist = Float.MAX_VALUE;
-		E bestE = null;
-		for(Epicenter<E> cur : centers) {
-			float dist = cur.mapDistanceSquared(x, z);
-			//System.out.println("DIST: "+dist);
-			if (bestE==null || dist<bestDist) {
-				//System.out.println("SELECTED");
-				bestE = cur.e;
-				bestDist = dist;
+		int offsetX = (nearest%3) - 1;
+		int offsetZ = (nearest/3) - 1;
+		return cellFor(a.get(x+offsetX, z+offsetZ), b.get(x+offsetX, z+offsetZ));
+	}
+	
+	/**
+	 * Gets the cell-type of every block in the rectangle, if it can cheaply be proven that they all share one, or
+	 * null otherwise. A null doesn't mean the rectangle is mixed, just that it has to be resolved block by block.
+	 * 
+	 * <p>The rectangle has to lie within one voronoi cell, and one of the nine epicenters has to be nearer than all
+	 * the others at each of its corners; distances are quadratic in the same way everywhere, so the difference between
+	 * two of them is linear, and that makes the corners enough. Then the noise feeding that epicenter's cell-type has
+	 * to stay close enough to one registered cell across the whole rectangle.
+	 */
+	@Nullable
+	public E uniformCell(int x, int z, int width, int depth) {
+		float minRX = rescale(x, scale);
+		float maxRX = rescale(x + width - 1, scale);
+		float minRZ = rescale(z, scale);
+		float maxRZ = rescale(z + depth - 1, scale);
+		int cx = (int)minRX;
+		int cz = (int)minRZ;
+		if ((int)maxRX!=cx || (int)maxRZ!=cz) return null;
+		
+		EpicenterCache cache = epicenterCache.get();
+		int base = cache.lookup(this, cx, cz);
+		int nearest = cache.nearestEverywhere(base, minRX, maxRX, minRZ, maxRZ);
+		if (nearest<0) return null;
+		
+		int offsetX = (nearest%3) - 1;
+		int offsetZ = (nearest/3) - 1;
+		float[] boundsA = new float[2];
+		float[] boundsB = new float[2];
+		a.getBounds(boundsA, x+offsetX, z+offsetZ, width, depth);
+		b.getBounds(boundsB, x+offsetX, z+offsetZ, width, depth);
+		return index.nearestEverywhere(
+				boundsA[0]-NOISE_EPSILON, boundsA[1]+NOISE_EPSILON,
+				boundsB[0]-NOISE_EPSILON, boundsB[1]+NOISE_EPSILON);
+	}
+	
+	public void fill(E[] dest, int x, int z, int width, int depth) {
+		fill(dest, x, z, width, depth, 1);
+	}
+	
+	/**
+	 * Fills dest with the cells for a whole grid of points at once, such that
+	 * {@code dest[zi*width + xi] == get(x + xi*spacing, z + zi*spacing)}. Points are grouped by the voronoi cell they
+	 * fall in, so each group's epicenters are only looked up once.
+	 */
+	public void fill(E[] dest, int x, int z, int width, int depth, int spacing) {
+		EpicenterCache cache = epicenterCache.get();
+		
+		for(int zStart=0; zStart<depth; ) {
+			int cz = (int)rescale(z + zStart*spacing, scale);
+			int zEnd = zStart+1;
+			while(zEnd<depth && (int)rescale(z + zEnd*spacing, scale)==cz) zEnd++;
+			
+			for(int xStart=0; xStart<width; ) {
+				int cx = (int)rescale(x + xStart*spacing, scale);
+				int xEnd = xStart+1;
+				while(xEnd<width && (int)rescale(x + xEnd*spacing, scale)==cx) xEnd++;
+				
+				int base = cache.lookup(this, cx, cz);
+				for(int zi=zStart; zi<zEnd; zi++) {
+					int blockZ = z + zi*spacing;
+					float rz = rescale(blockZ, scale);
+					for(int xi=xStart; xi<xEnd; xi++) {
+						int blockX = x + xi*spacing;
+						int nearest = cache.nearest(base, rescale(blockX, scale), rz);
+						
+						int offsetX = (nearest%3) - 1;
+						int offsetZ = (nearest/3) - 1;
+						dest[zi*width + xi] = cellFor(a.get(blockX+offsetX, blockZ+offsetZ), b.get(blockX+offsetX, blockZ+offsetZ));
+					}
+				}
+				
+				xStart = xEnd;
 			}
+			zStart = zEnd;
+		}
+	}
+	
+	/** Gets how many cell-types are registered. Blend weights come out in registration order, one per cell-type. */
+	public int getCellCount() {
+		return index.entries.length;
+	}
+	
+	/** Gets the cell-type registered at the given position, counting from 0 */
+	public E getCell(int i) {
+		return index.entries[i].e;
+	}
+	
+	/**
+	 * Works out how strongly each registered cell-type shows through at block (x, z) once the borders between them
+	 * are smoothed over, and writes the weights, which add up to 1, into dest from offset on. Neighbouring epicenters
+	 * fade in over the last voronoiWidth (in voronoi cells) before their border, and within a cell, neighbouring
+	 * cell-types fade in over the last parameterWidth before theirs. Well inside a cell, get's answer has all the
+	 * weight.
+	 */
+	public void getBlendWeights(float[] dest, int offset, int x, int z, float voronoiWidth, float parameterWidth) {
+		CellIndex<E> index = this.index;
+		Arrays.fill(dest, offset, offset + index.entries.length, 0f);
+		
+		float rx = rescale(x, scale);
+		float rz = rescale(z, scale);
+		EpicenterCache cache = epicenterCache.get();
+		int base = cache.lookup(this, (int)rx, (int)rz);
+		float[] distances = cache.distances;
+		float nearest = Float.MAX_VALUE;
+		for(int i=0; i<9; i++) {
+			float dx = cache.centerX[base+i]-rx;
+			float dz = cache.centerZ[base+i]-rz;
+			distances[i] = (float)Math.sqrt(dx*dx+dz*dz);
+			nearest = Math.min(nearest, distances[i]);
 		}
 		
-		return bestE;
-		//float epicenterX 
-		//long hash = (((epicenterBase * 31) + x) * 31) + z;
-		//Random rnd = new Random(seed);
+		float total = 0;
+		for(int i=0; i<9; i++) {
+			float gap = distances[i] - nearest;
+			if (gap>=voronoiWidth) continue;
+			
+			int blockX = x + (i%3) - 1;
+			int blockZ = z + (i/3) - 1;
+			total += index.addWeights(dest, offset, a.get(blockX, blockZ), b.get(blockX, blockZ), parameterWidth, 1 - gap/voronoiWidth);
+		}
+		for(int i=0; i<index.entries.length; i++) {
+			dest[offset+i] /= total;
+		}
+	}
+	
+	/**
+	 * Walks the voronoi cells in square rings around the one containing block (x, z), far enough out to cover every
+	 * block within radius, and shows the visitor the block at each cell's epicenter along with that block's cell-type.
+	 * Cells are stepped over whole, so this is thousands of times cheaper than testing every block, but a cell-type
+	 * that only shows up away from the epicenters won't be seen.
+	 */
+	public void forEachEpicenter(int x, int z, int radius, EpicenterVisitor<E> visitor) {
+		int centerX = (int)rescale(x, scale);
+		int centerZ = (int)rescale(z, scale);
+		int rings = radius/scale + 1;
 		
-		//double aHere = a.get(x, z);
-		//double bHere = b.get(x, z);
-		//return cellFor(aHere, bHere);
+		for(int ring=0; ring<=rings; ring++) {
+			for(int cz=centerZ-ring; cz<=centerZ+ring; cz++) {
+				//Only the top and bottom rows are walked in full; the rows in between just have their two ends
+				boolean edge = (cz==centerZ-ring || cz==centerZ+ring);
+				int step = (edge) ? 1 : 2*ring;
+				for(int cx=centerX-ring; cx<=centerX+ring; cx+=step) {
+					long locationSeed = epicenterSeed(epicenterBase, cx, cz);
+					int blockX = unscale(cx + firstFloat(locationSeed), scale);
+					int blockZ = unscale(cz + secondFloat(locationSeed), scale);
+					if (!visitor.visit(blockX, blockZ, get(blockX, blockZ))) return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets a block whose rescaled coordinate is about the one given. rescale never produces anything between -1 and 0,
+	 * so those land on block -1.
+	 */
+	public static int unscale(float coord, int scale) {
+		if (coord>=0) return (int)(coord*scale);
+		return Math.min((int)Math.floor((coord+1)*scale), -1);
+	}
+	
+	@FunctionalInterface
+	public interface EpicenterVisitor<E> {
+		/** Looks at one epicenter's block, and returns false to stop the search there */
+		boolean visit(int blockX, int blockZ, E cell);
+	}
+	
+	private static long epicenterSeed(long seed, int x, int z) {
+		return (seed*31) + (x*61507) + (z*54727);
+	}
+	
+	//java.util.Random's LCG constants
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+	
+	/** Gets the value {@code new Random(seed).nextFloat()} would, without the Random */
+	private static float firstFloat(long seed) {
+		long state = (seed ^ MULTIPLIER) & MASK;
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return ((int)(state >>> 24)) / ((float)(1 << 24));
+	}
+	
+	/** Gets the value a second nextFloat() call on {@code new Random(seed)} would, without the Random */
+	private static float secondFloat(long seed) {
+		long state = (seed ^ MULTIPLIER) & MASK;
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return ((int)(state >>> 24)) / ((float)(1 << 24));
 	}
 	
 	/*
@@ -154,13 +352,240 @@ public class VoronoiClusterField<E> {
 	}
 	
 	public boolean containsCell(E cell) {
-		return cells.contains(cell);
+		for(Entry<E> entry : cells) {
+			if (entry.e.equals(cell)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Snapshot of the registered cells, with the 0..1 square of parameter space cut into a grid. Each grid square
+	 * lists just the entries that could possibly be nearest to some point inside it, in registration order, so
+	 * scanning that list gives exactly the same answer as scanning every entry.
+	 */
+	private static class CellIndex<E> {
+		private final Entry<E>[] entries;
+		private final Entry<E>[][] candidates;
+		
+		@SuppressWarnings("unchecked")
+		public CellIndex(List<Entry<E>> cells) {
+			entries = cells.toArray(new Entry[cells.size()]);
+			candidates = new Entry[INDEX_SIZE*INDEX_SIZE][];
+			
+			ArrayList<Entry<E>> squareCandidates = new ArrayList<>();
+			for(int ib=0; ib<INDEX_SIZE; ib++) {
+				double minB = ib / (double)INDEX_SIZE;
+				double maxB = (ib+1) / (double)INDEX_SIZE;
+				for(int ia=0; ia<INDEX_SIZE; ia++) {
+					double minA = ia / (double)INDEX_SIZE;
+					double maxA = (ia+1) / (double)INDEX_SIZE;
+					
+					//No point in the square is further than this from its nearest entry
+					double bound = Double.MAX_VALUE;
+					for(Entry<E> entry : entries) {
+						double farthest = Math.max(Math.abs(entry.a-minA), Math.abs(entry.a-maxA))
+								+ Math.max(Math.abs(entry.b-minB), Math.abs(entry.b-maxB));
+						bound = Math.min(bound, farthest);
+					}
+					
+					//...so an entry which is always further away than that can never win, or tie
+					squareCandidates.clear();
+					for(Entry<E> entry : entries) {
+						double nearest = Math.max(0, Math.max(minA-entry.a, entry.a-maxA))
+								+ Math.max(0, Math.max(minB-entry.b, entry.b-maxB));
+						if (nearest <= bound + INDEX_EPSILON) squareCandidates.add(entry);
+					}
+					candidates[ib*INDEX_SIZE + ia] = squareCandidates.toArray(new Entry[squareCandidates.size()]);
+				}
+			}
+		}
+		
+		public E nearest(double a, double b) {
+			Entry<E> best = nearestEntry(a, b);
+			return (best==null) ? null : best.e;
+		}
+		
+		/**
+		 * Gets the cell-type nearest to every point in the rectangle, if one entry is nearer than all the others
+		 * everywhere in it by a safe margin, or null if not.
+		 */
+		@Nullable
+		public E nearestEverywhere(double minA, double maxA, double minB, double maxB) {
+			Entry<E> winner = nearestEntry((minA+maxA)/2, (minB+maxB)/2);
+			if (winner==null) return null;
+			for(Entry<E> other : entries) {
+				if (other==winner) continue;
+				//Manhattan distance is separable, so the worst case for each axis can be found on its own
+				double worst = maxGap(minA, maxA, winner.a, other.a) + maxGap(minB, maxB, winner.b, other.b);
+				if (worst > -INDEX_EPSILON) return null;
+			}
+			return winner.e;
+		}
+		
+		/**
+		 * Gets the largest value of |p-winner| - |p-other| for p in min..max. It's piecewise linear in p, bending only
+		 * at winner and other, so its maximum is at one of those or at an end of the range.
+		 */
+		private static double maxGap(double min, double max, double winner, double other) {
+			double result = Math.max(gap(min, winner, other), gap(max, winner, other));
+			if (winner>min && winner<max) result = Math.max(result, gap(winner, winner, other));
+			if (other>min && other<max) result = Math.max(result, gap(other, winner, other));
+			return result;
+		}
+		
+		private static double gap(double p, double winner, double other) {
+			return Math.abs(p-winner) - Math.abs(p-other);
+		}
+		
+		/**
+		 * Adds share to the weight of the entry nearest to (a, b), and a fading fraction of it to any other entry
+		 * within width of being as near, then returns how much weight was added in all.
+		 */
+		public float addWeights(float[] dest, int offset, double a, double b, float width, float share) {
+			double nearest = Double.MAX_VALUE;
+			for(Entry<E> entry : entries) {
+				nearest = Math.min(nearest, Math.abs(entry.a-a) + Math.abs(entry.b-b));
+			}
+			
+			float added = 0;
+			for(int i=0; i<entries.length; i++) {
+				double gap = Math.abs(entries[i].a-a) + Math.abs(entries[i].b-b) - nearest;
+				if (gap>=width) continue;
+				float weight = share * (float)(1 - gap/width);
+				dest[offset+i] += weight;
+				added += weight;
+			}
+			return added;
+		}
+		
+		@Nullable
+		private Entry<E> nearestEntry(double a, double b) {
+			Entry<E>[] scan = entries;
+			if (a>=0 && a<=1 && b>=0 && b<=1) {
+				int ia = Math.min((int)(a*INDEX_SIZE), INDEX_SIZE-1);
+				int ib = Math.min((int)(b*INDEX_SIZE), INDEX_SIZE-1);
+				scan = candidates[ib*INDEX_SIZE + ia];
+			}
+			
+			double bestDistance = Double.MAX_VALUE;
+			Entry<E> best = null;
+			for(Entry<E> entry : scan) {
+				double dist = Math.abs(entry.a-a) + Math.abs(entry.b-b);
+				if (best==null || dist<bestDistance) {
+					best = entry;
+					bestDistance = dist;
+				}
+			}
+			
+			return best;
+		}
+	}
+	
+	/**
+	 * A thread's least-recently-used cache of the nine epicenters around recently visited voronoi cells, kept as flat
+	 * arrays: slot i's epicenters are at [i*9 .. i*9+8], in recenterOn's order. Cell-types can't be cached with them,
+	 * because recenterOn samples them at an offset from the block being looked up, not at a fixed point per cell.
+	 */
+	private static class EpicenterCache {
+		private final long[] keys = new long[EPICENTER_CACHE_SIZE];
+		/** Tick each slot was last used on; 0 marks an empty slot */
+		private final long[] lastUsed = new long[EPICENTER_CACHE_SIZE];
+		private final float[] centerX = new float[EPICENTER_CACHE_SIZE*9];
+		private final float[] centerZ = new float[EPICENTER_CACHE_SIZE*9];
+		/** Scratch space for getBlendWeights */
+		private final float[] distances = new float[9];
+		private long tick = 0;
+		private long seed;
+		private int scale;
+		
+		/**
+		 * Finds or places the epicenters around voronoi cell (cx, cz), and returns the index of the first one.
+		 */
+		public int lookup(VoronoiClusterField<?> field, int cx, int cz) {
+			if (field.epicenterBase!=seed || field.scale!=scale) {
+				//The field was reseeded or rescaled since this cache was filled
+				Arrays.fill(lastUsed, 0L);
+				seed = field.epicenterBase;
+				scale = field.scale;
+			}
+			
+			long key = ((long)cx << 32) | (cz & 0xFFFFFFFFL);
+			tick++;
+			int oldest = 0;
+			for(int slot=0; slot<EPICENTER_CACHE_SIZE; slot++) {
+				if (lastUsed[slot]!=0 && keys[slot]==key) {
+					lastUsed[slot] = tick;
+					return slot*9;
+				}
+				if (lastUsed[slot] < lastUsed[oldest]) oldest = slot;
+			}
+			
+			keys[oldest] = key;
+			lastUsed[oldest] = tick;
+			for(int i=0; i<9; i++) {
+				int epicenterX = cx + (i%3) - 1;
+				int epicenterZ = cz + (i/3) - 1;
+				long locationSeed = epicenterSeed(seed, epicenterX, epicenterZ);
+				centerX[oldest*9 + i] = epicenterX + firstFloat(locationSeed);
+				centerZ[oldest*9 + i] = epicenterZ + secondFloat(locationSeed);
+			}
+			return oldest*9;
+		}
+		
+		/**
+		 * Picks which of the nine epicenters starting at base is nearest everywhere in the given rectangle of rescaled
+		 * coordinates, or returns -1 if none of them is by a comfortable margin. The difference between two squared
+		 * distances is linear across the rectangle, so it's only checked at the corners. Float distances get less
+		 * precise the further out they are, so the margin grows with the coordinates.
+		 */
+		public int nearestEverywhere(int base, float minRX, float maxRX, float minRZ, float maxRZ) {
+			int winner = nearest(base, (minRX+maxRX)/2, (minRZ+maxRZ)/2);
+			float magnitude = Math.max(Math.max(Math.abs(minRX), Math.abs(maxRX)), Math.max(Math.abs(minRZ), Math.abs(maxRZ))) + 4;
+			double margin = 1e-4 + 64*Math.ulp(magnitude);
+			
+			for(int i=0; i<9; i++) {
+				if (i==winner) continue;
+				if (distanceGap(base+i, base+winner, minRX, minRZ)<=margin) return -1;
+				if (distanceGap(base+i, base+winner, maxRX, minRZ)<=margin) return -1;
+				if (distanceGap(base+i, base+winner, minRX, maxRZ)<=margin) return -1;
+				if (distanceGap(base+i, base+winner, maxRX, maxRZ)<=margin) return -1;
+			}
+			return winner;
+		}
+		
+		/** Gets how much further the point is from epicenter i than from epicenter winner, in squared distance */
+		private double distanceGap(int i, int winner, double rx, double rz) {
+			double ix = centerX[i]-rx;
+			double iz = centerZ[i]-rz;
+			double wx = centerX[winner]-rx;
+			double wz = centerZ[winner]-rz;
+			return (ix*ix + iz*iz) - (wx*wx + wz*wz);
+		}
+		
+		/**
+		 * Picks which of the nine epicenters starting at base is nearest to the given rescaled coordinates, breaking
+		 * ties the same way get always has.
+		 */
+		public int nearest(int base, float rx, float rz) {
+			int best = 0;
+			float bestDist = Float.MAX_VALUE;
+			for(int i=0; i<9; i++) {
+				float dx = Math.abs(centerX[base+i]-rx);
+				float dz = Math.abs(centerZ[base+i]-rz);
+				float dist = dx*dx+dz*dz;
+				if (i==0 || dist<bestDist) {
+					best = i;
+					bestDist = dist;
+				}
+			}
+			return best;
+		}
 	}
 	
 	private static class Entry<E> {
-		public E e;
-		public float a;
-		public float b;
+		public final E e;
+		public final float a;
+		public final float b;
 		
 		public Entry(E e, float a, float b) {
 			this.e = e;
@@ -193,10 +618,9 @@ public class VoronoiClusterField<E> {
 		public Epicenter(int x, int z, long seed, int scale) {
 			this.scale = scale;
 			
-			long locationSeed = (seed*31) + (x*61507) + (z*54727);
-			Random rand = new Random(locationSeed);
-			this.fractionX = rand.nextFloat();
-			this.fractionZ = rand.nextFloat();
+			long locationSeed = epicenterSeed(seed, x, z);
+			this.fractionX = firstFloat(locationSeed);
+			this.fractionZ = secondFloat(locationSeed);
 			
 			this.cellX = x + fractionX;
 			this.cellZ = z + fractionZ;
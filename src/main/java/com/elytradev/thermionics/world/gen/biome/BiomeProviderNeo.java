@@ -23,15 +23,19 @@
  */
 package com.elytradev.thermionics.world.gen.biome;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nullable;
 
 import com.elytradev.thermionics.world.gen.VoronoiClusterField;
 import com.google.common.collect.ImmutableList;
 
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.WorldType;
 import net.minecraft.world.biome.Biome;
 import net.minecraft.world.biome.BiomeProvider;
@@ -39,15 +43,55 @@ import net.minecraft.world.gen.layer.GenLayer;
 import net.minecraft.world.storage.WorldInfo;
 
 public class BiomeProviderNeo extends BiomeProvider {
-	VoronoiClusterField<Biome> biomeSelector;
-
+	/** Biome ID getBiomeIds reports for anything that isn't a registered NeoBiome. No registered biome can have it. */
+	public static final byte NO_BIOME = (byte)(BiomeRegistry.MAX_ID + 1);
+	
+	/** Number of chunk tiles the cache can hold, about 1.3MB worth. Must be a power of two. */
+	private static final int CACHE_SIZE = 4096;
+	/** How long a tile can go unused before cleanupCache evicts it, in milliseconds. Matches vanilla's BiomeCache. */
+	private static final long CACHE_LIFETIME = 15000L;
+	private static final long CACHE_CLEANUP_INTERVAL = 7500L;
+	
+	/** How far short of a voronoi border, in cells, the biome beyond it starts to blend in */
+	private static final float BLEND_CELL_WIDTH = 0.2f;
+	/** How far short of a border inside one voronoi cell, in temperature/rainfall, the biome beyond it starts to blend in */
+	private static final float BLEND_PARAMETER_WIDTH = 0.06f;
+	
+	VoronoiClusterField<NeoBiome> biomeSelector;
+	private final NeoBiome[] biomesById = new NeoBiome[256];
+	/** The biomes getBlendWeights reports weights for, in the order it reports them */
+	private final NeoBiome[] blendBiomes;
+	
+	/**
+	 * Two-way set-associative cache of resolved chunk tiles: a chunk can live in either slot of its pair, and a miss
+	 * replaces whichever of the two was used least recently. Tiles are immutable once published, so a thread that races
+	 * another for a slot only ever sees a complete tile, or a miss.
+	 */
+	private final BiomeTile[] cache = new BiomeTile[CACHE_SIZE];
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private final LongAdder uniformTiles = new LongAdder();
+	private long lastCleanupTime = 0L;
 	
 	public BiomeProviderNeo(WorldInfo info) {
-		super(info);
+		this(info.getSeed());
+	}
+	
+	/**
+	 * Creates a BiomeProviderNeo without a world. Unlike the vanilla constructors, this doesn't build the overworld's
+	 * GenLayer stack, which Neo-Hell never uses.
+	 */
+	public BiomeProviderNeo(long seed) {
+		super();
 		
-		biomeSelector = new VoronoiClusterField<Biome>(info.getSeed(), 16*9);
+		biomeSelector = new VoronoiClusterField<NeoBiome>(seed, 16*9);
 		for(NeoBiome biome : BiomeRegistry.NEO_HELL) {
 			biomeSelector.registerCell(biome, biome.getDefaultTemperature(), biome.getRainfall());
+			if (biome.getId()>=0) biomesById[biome.getId() & 0xFF] = biome;
+		}
+		blendBiomes = new NeoBiome[biomeSelector.getCellCount()];
+		for(int i=0; i<blendBiomes.length; i++) {
+			blendBiomes[i] = biomeSelector.getCell(i);
 		}
 	}
 	
@@ -58,12 +102,134 @@ public class BiomeProviderNeo extends BiomeProvider {
 
 	@Override
 	public Biome getBiome(BlockPos pos, Biome defaultBiome) {
-        return biomeSelector.get(pos.getX(), pos.getZ());
+		byte[] tile = getTile(pos.getX() >> 4, pos.getZ() >> 4);
+		NeoBiome biome = biomesById[tile[(pos.getZ() & 15)*16 + (pos.getX() & 15)] & 0xFF];
+		return (biome==null) ? defaultBiome : biome;
     }
 	
+	/**
+	 * Writes the BiomeRegistry.NEO_HELL IDs of a width x depth area of blocks into dest, x-fastest, without going
+	 * through Biome objects or BlockPos. Registry IDs are never above 255, so they're stored as unsigned bytes. The
+	 * area is copied out of cached chunk tiles, so asking for the same chunks again costs next to nothing.
+	 */
+	public void getBiomeIds(byte[] dest, int x, int z, int width, int depth) {
+		for(int zi=0; zi<depth; ) {
+			int blockZ = z+zi;
+			int rows = Math.min(16 - (blockZ & 15), depth-zi);
+			for(int xi=0; xi<width; ) {
+				int blockX = x+xi;
+				int columns = Math.min(16 - (blockX & 15), width-xi);
+				byte[] tile = getTile(blockX >> 4, blockZ >> 4);
+				for(int row=0; row<rows; row++) {
+					System.arraycopy(tile, ((blockZ+row) & 15)*16 + (blockX & 15), dest, (zi+row)*width + xi, columns);
+				}
+				xi += columns;
+			}
+			zi += rows;
+		}
+	}
+	
+	/**
+	 * Gets the ID getBiomeIds reports for a biome: its BiomeRegistry.NEO_HELL ID, or NO_BIOME if it hasn't got one.
+	 */
+	public static byte toBiomeId(@Nullable Biome biome) {
+		if (!(biome instanceof NeoBiome)) return NO_BIOME;
+		int id = ((NeoBiome)biome).getId();
+		return (id<0 || id>BiomeRegistry.MAX_ID) ? NO_BIOME : (byte)id;
+	}
+	
+	/**
+	 * Gets the biomes that blend weights are reported for. Don't change the array.
+	 */
+	public NeoBiome[] getBlendBiomes() {
+		return blendBiomes;
+	}
+	
+	/**
+	 * Works out how strongly each of the {@link #getBlendBiomes()} shows through at a grid of points spaced every
+	 * spacing blocks, with biome borders smoothed over. The weights for the point at (xi, zi) start at
+	 * {@code dest[(zi*width + xi) * getBlendBiomes().length]}, and add up to 1.
+	 */
+	public void getBlendWeights(float[] dest, int x, int z, int width, int depth, int spacing) {
+		for(int zi=0; zi<depth; zi++) {
+			for(int xi=0; xi<width; xi++) {
+				biomeSelector.getBlendWeights(dest, (zi*width + xi) * blendBiomes.length, x + xi*spacing, z + zi*spacing,
+						BLEND_CELL_WIDTH, BLEND_PARAMETER_WIDTH);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the biome IDs of one chunk, z-major, from the cache or the Voronoi field. The array is shared with the
+	 * cache, so it mustn't be changed.
+	 */
+	private byte[] getTile(int chunkX, int chunkZ) {
+		long key = ChunkPos.asLong(chunkX, chunkZ);
+		int slot = slotFor(key);
+		long now = MinecraftServer.getCurrentTimeMillis();
+		
+		BiomeTile first = cache[slot];
+		if (first!=null && first.key==key) {
+			cacheHits.increment();
+			first.lastUsed = now;
+			return first.ids;
+		}
+		BiomeTile second = cache[slot+1];
+		if (second!=null && second.key==key) {
+			cacheHits.increment();
+			second.lastUsed = now;
+			return second.ids;
+		}
+		
+		cacheMisses.increment();
+		byte[] ids = new byte[16*16];
+		NeoBiome uniform = biomeSelector.uniformCell(chunkX*16, chunkZ*16, 16, 16);
+		if (uniform!=null) {
+			//Most chunks sit well inside one voronoi cell
+			uniformTiles.increment();
+			Arrays.fill(ids, toBiomeId(uniform));
+		} else {
+			NeoBiome[] biomes = new NeoBiome[16*16];
+			biomeSelector.fill(biomes, chunkX*16, chunkZ*16, 16, 16);
+			for(int i=0; i<ids.length; i++) {
+				ids[i] = toBiomeId(biomes[i]);
+			}
+		}
+		if (first!=null && (second==null || second.lastUsed < first.lastUsed)) slot++;
+		cache[slot] = new BiomeTile(key, ids, now);
+		return ids;
+	}
+	
+	/** Gets the first slot of the pair this chunk can be cached in */
+	private static int slotFor(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int)(hash >>> 32) & (CACHE_SIZE-2);
+	}
+	
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+	
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+	
+	/** Gets how many of the cache misses were for chunks that turned out to be all one biome */
+	public long getUniformTiles() {
+		return uniformTiles.sum();
+	}
+	
+	/**
+	 * Gets biomes at quarter resolution, like vanilla's GenLayer output: element (xi, zi) is the biome at block
+	 * ((x+xi)*4, (z+zi)*4).
+	 */
 	@Override
 	public Biome[] getBiomesForGeneration(Biome[] biomes, int x, int z, int width, int height) {
-		throw new UnsupportedOperationException("This biome provider does not support tile-based generation.");
+		if (biomes==null || biomes.length < width*height) biomes = new Biome[width*height];
+		NeoBiome[] result = new NeoBiome[width*height];
+		biomeSelector.fill(result, x*4, z*4, width, height, 4);
+		System.arraycopy(result, 0, biomes, 0, result.length);
+		return biomes;
 	}
 	
 	@Override
@@ -78,30 +244,118 @@ public class BiomeProviderNeo extends BiomeProvider {
 
 	@Override
     public Biome[] getBiomes(@Nullable Biome[] oldBiomeList, int x, int z, int width, int depth) {
-		throw new UnsupportedOperationException("This biome provider does not support tile-based generation.");
+		return this.getBiomes(oldBiomeList, x, z, width, depth, true);
     }
 
+	/**
+	 * Gets the biomes of a width x length area of blocks, x-fastest. As in vanilla, only chunk-aligned 16x16 requests
+	 * with cacheFlag set come out of the cache; anything else is worked out fresh, a voronoi cell at a time, and isn't
+	 * cached.
+	 */
     @Override
     public Biome[] getBiomes(@Nullable Biome[] listToReuse, int x, int z, int width, int length, boolean cacheFlag) {
-    	throw new UnsupportedOperationException("This biome provider does not support tile-based generation.");
+    	if (listToReuse==null || listToReuse.length < width*length) listToReuse = new Biome[width*length];
+    	
+    	if (cacheFlag && width==16 && length==16 && (x & 15)==0 && (z & 15)==0) {
+    		byte[] tile = getTile(x >> 4, z >> 4);
+    		for(int i=0; i<16*16; i++) {
+    			listToReuse[i] = biomesById[tile[i] & 0xFF];
+    		}
+    		return listToReuse;
+    	}
+    	
+    	NeoBiome[] result = new NeoBiome[width*length];
+    	biomeSelector.fill(result, x, z, width, length);
+    	System.arraycopy(result, 0, listToReuse, 0, result.length);
+    	return listToReuse;
     }
 
+    /**
+     * Checks that every biome within radius blocks of (x, z) is one of the allowed ones. An area that sits inside one
+     * voronoi cell is answered in one step; anything else is sampled every 4 blocks, the same as vanilla's check.
+     */
     @Override
     public boolean areBiomesViable(int x, int z, int radius, List<Biome> allowed) {
-        for(Biome biome : allowed) {
-        	if (!this.biomeSelector.containsCell(biome)) return false;
-        }
-        return true;
+    	int size = radius*2 + 1;
+    	NeoBiome uniform = biomeSelector.uniformCell(x-radius, z-radius, size, size);
+    	if (uniform!=null) return allowed.contains(uniform);
+    	
+    	int minX = (x-radius) >> 2;
+    	int minZ = (z-radius) >> 2;
+    	int width = ((x+radius) >> 2) - minX + 1;
+    	int depth = ((z+radius) >> 2) - minZ + 1;
+    	NeoBiome[] biomes = new NeoBiome[width*depth];
+    	biomeSelector.fill(biomes, minX*4, minZ*4, width, depth, 4);
+    	for(NeoBiome biome : biomes) {
+    		if (biome==null || !allowed.contains(biome)) return false;
+    	}
+    	return true;
     }
 
+    /**
+     * Picks a random spot within range blocks of (x, z) whose biome is one of the given ones, or returns null if
+     * there isn't one. Only the voronoi epicenters are considered, so this costs one lookup per cell rather than per
+     * block.
+     */
     @Override
     @Nullable
     public BlockPos findBiomePosition(int x, int z, int range, List<Biome> biomes, Random random) {
-        return null;
+    	BlockPos[] result = new BlockPos[1];
+    	int[] found = new int[1];
+    	biomeSelector.forEachEpicenter(x, z, range, (blockX, blockZ, biome)->{
+    		if (Math.abs(blockX-x)<=range && Math.abs(blockZ-z)<=range && biomes.contains(biome)) {
+    			found[0]++;
+    			if (random.nextInt(found[0])==0) result[0] = new BlockPos(blockX, 0, blockZ);
+    		}
+    		return true;
+    	});
+    	return result[0];
+    }
+    
+    /**
+     * Finds the voronoi epicenter nearest to (x, z), within radius blocks, whose block is in the given biome, or
+     * returns null if there isn't one. The search spirals outwards a cell at a time and stops as soon as no cell left
+     * could be any closer.
+     */
+    @Nullable
+    public BlockPos findNearestBiome(int x, int z, int radius, NeoBiome biome) {
+    	//Epicenters in later rings can't be more than three cells nearer than the one being looked at
+    	long slack = biomeSelector.scale * 3L;
+    	BlockPos[] nearest = new BlockPos[1];
+    	long[] nearestDistance = { (long)radius*radius + 1 };
+    	biomeSelector.forEachEpicenter(x, z, radius, (blockX, blockZ, cell)->{
+    		long dx = blockX-x;
+    		long dz = blockZ-z;
+    		if (nearest[0]!=null) {
+    			long closestLeft = Math.max(Math.abs(dx), Math.abs(dz)) - slack;
+    			if (closestLeft>0 && closestLeft*closestLeft > nearestDistance[0]) return false;
+    		}
+    		
+    		long distance = dx*dx + dz*dz;
+    		if (cell==biome && distance<nearestDistance[0]) {
+    			nearest[0] = new BlockPos(blockX, 0, blockZ);
+    			nearestDistance[0] = distance;
+    		}
+    		return true;
+    	});
+    	return nearest[0];
     }
 
+    /**
+     * Evicts every cached tile that hasn't been used lately. The world calls this every tick, so most calls return
+     * right away.
+     */
     @Override
-    public void cleanupCache() { }
+    public void cleanupCache() {
+    	long now = MinecraftServer.getCurrentTimeMillis();
+    	if (now - lastCleanupTime < CACHE_CLEANUP_INTERVAL) return;
+    	lastCleanupTime = now;
+    	
+    	for(int i=0; i<CACHE_SIZE; i++) {
+    		BiomeTile tile = cache[i];
+    		if (tile!=null && now - tile.lastUsed > CACHE_LIFETIME) cache[i] = null;
+    	}
+    }
 
     @Override
     public GenLayer[] getModdedBiomeGenerators(WorldType worldType, long seed, GenLayer[] original) {
@@ -116,4 +370,17 @@ public class BiomeProviderNeo extends BiomeProvider {
     public Biome getFixedBiome() {
         return null;
     }
+    
+    private static class BiomeTile {
+    	final long key;
+    	final byte[] ids;
+    	/** Only used to pick tiles to evict, so it's fine for racing threads to clobber each other's updates */
+    	long lastUsed;
+    	
+    	BiomeTile(long key, byte[] ids, long lastUsed) {
+    		this.key = key;
+    		this.ids = ids;
+    		this.lastUsed = lastUsed;
+    	}
+    }
 }
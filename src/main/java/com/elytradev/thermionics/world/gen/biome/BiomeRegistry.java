@@ -34,6 +34,8 @@ import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 
 public class BiomeRegistry extends RegistryNamespaced<String, NeoBiome> {
 	public static BiomeRegistry NEO_HELL = new BiomeRegistry();
+	/** Biome IDs are stored as unsigned bytes, and the last byte value is kept back for BiomeProviderNeo.NO_BIOME */
+	public static final int MAX_ID = 254;
 	
 	public void init() {
 		NEO_HELL.register(0,
@@ -147,7 +149,9 @@ public class BiomeRegistry extends RegistryNamespaced<String, NeoBiome> {
 	}
 	
 	public void register(int id, NeoBiome biome) {
+		if (id<0 || id>MAX_ID) throw new IllegalArgumentException("Neo-Hell biome IDs go from 0 to "+MAX_ID+", not "+id);
 		this.register(id, biome.name(), biome);
+		biome.id = id;
 	}
 	
 	@SubscribeEvent
@@ -42,11 +42,17 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 public class NeoBiome extends Biome {
 	public static final IBlockState BEDROCK = Blocks.BEDROCK.getDefaultState();
+	/** How many blocks down from the top of the terrain the surface material goes */
+	public static final int SURFACE_DEPTH = 4;
+	/** Adjusted density below which nougat is made of its surface material */
+	public static final float DENSITY_SURFACE_THRESHOLD = 0.10f;
 	
 	//private final String name;
 	//private final int id;
 	
 	private String name;
+	/** This biome's ID in BiomeRegistry.NEO_HELL, or -1 if it hasn't been registered there */
+	int id = -1;
 	
 	float terrainHeight = 128f;
 	
@@ -133,6 +139,7 @@ public class NeoBiome extends Biome {
 		return types;
 	}
 	
+	public int getId() { return id; }
 	public float getTerrainHeight() { return terrainHeight; }
 	public float getDensity() { return density; }
 	public float getVeinHeight() { return veinHeight; }
@@ -143,7 +150,7 @@ public class NeoBiome extends Biome {
 	 * @return
 	 */
 	public IBlockState getTerrainMaterial(int y) {
-		if (y<4) return terrainSurfaceMaterial;
+		if (y<SURFACE_DEPTH) return terrainSurfaceMaterial;
 		else return terrainFillMaterial;
 	}
 	
@@ -153,7 +160,7 @@ public class NeoBiome extends Biome {
 	 * @return
 	 */
 	public IBlockState getDensityMaterial(float adjustedDensity) {
-		if (adjustedDensity<0.10f) return densitySurfaceMaterial;
+		if (adjustedDensity<DENSITY_SURFACE_THRESHOLD) return densitySurfaceMaterial;
 		return densityCoreMaterial;
 	}
 	
@@ -0,0 +1,118 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.util.IdentityHashMap;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Boils generated chunk data down to a single 64-bit FNV-1a hash, so that two generation runs can be compared without
+ * keeping either of them around.
+ */
+public class ChunkFingerprint {
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	private ChunkFingerprint() {}
+	
+	/**
+	 * Hashes the state IDs in the primer. State IDs depend on the block registry, so these hashes are only comparable
+	 * within one running game.
+	 */
+	public static long of(ChunkPrimer primer) {
+		long hash = FNV_OFFSET;
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+					hash = (hash ^ Block.getStateId(primer.getBlockState(x, y, z))) * FNV_PRIME;
+				}
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * Hashes the registry name and metadata of every block in the primer. Unlike {@link #of(ChunkPrimer)}, this
+	 * doesn't depend on the order blocks were registered in, so it can be checked into source control.
+	 */
+	public static long ofStable(ChunkPrimer primer) {
+		IdentityHashMap<IBlockState, Long> stateHashes = new IdentityHashMap<>();
+		long hash = FNV_OFFSET;
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+					long stateHash = stateHashes.computeIfAbsent(primer.getBlockState(x, y, z), ChunkFingerprint::stableHash);
+					hash = (hash ^ stateHash) * FNV_PRIME;
+				}
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * Hashes a chunk's block storage sections the same way as {@link #ofStable(ChunkPrimer)}, so a chunk shaped
+	 * straight into its sections hashes the same as one shaped into a primer. Missing sections count as air.
+	 */
+	public static long ofStable(ExtendedBlockStorage[] sections) {
+		IdentityHashMap<IBlockState, Long> stateHashes = new IdentityHashMap<>();
+		IBlockState air = Blocks.AIR.getDefaultState();
+		long hash = FNV_OFFSET;
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+					ExtendedBlockStorage section = sections[y >> 4];
+					IBlockState state = (section==null) ? air : section.get(x, y & 15, z);
+					long stateHash = stateHashes.computeIfAbsent(state, ChunkFingerprint::stableHash);
+					hash = (hash ^ stateHash) * FNV_PRIME;
+				}
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * Hashes a chunk's biome array.
+	 */
+	public static long ofBiomes(byte[] biomes) {
+		long hash = FNV_OFFSET;
+		for(byte b : biomes) {
+			hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+		}
+		return hash;
+	}
+	
+	private static long stableHash(IBlockState state) {
+		Block block = state.getBlock();
+		long hash = FNV_OFFSET;
+		for(char ch : String.valueOf(block.getRegistryName()).toCharArray()) {
+			hash = (hash ^ ch) * FNV_PRIME;
+		}
+		return (hash ^ block.getMetaFromState(state)) * FNV_PRIME;
+	}
+}
@@ -0,0 +1,289 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Known-good hashes of a fixed set of Neo-Hell chunks, for proving that changes to the generator don't change the
+ * terrain of worlds that already exist. Each golden pins down one chunk's blocks and biomes for a given seed and
+ * generator configuration. The chunks straddle the origin, where every "if (coord<0) base-=1" path in the noise and
+ * biome code kicks in.
+ */
+public class GoldenChunks {
+	public static final String RESOURCE = "golden_chunks.txt";
+	
+	private static final String[] HEADER = {
+			"# Known-good Neo-Hell chunk hashes, checked by GoldenChunksTest.",
+			"# version fastMath seed chunkX chunkZ blocks biomes [options: blend, coarse]",
+			"# Only regenerate these (\"gradlew writeGoldens\") for a deliberate change to the terrain of new worlds. If a",
+			"# version 0 line changes, worlds that already exist will get seams."
+	};
+	
+	private static final long[] SEEDS = { 0L, 1L, -1L, 8675309L, -4962768465676381896L };
+	
+	private static final int[][] CHUNKS = {
+			{    0,     0 }, {   -1,    -1 }, {   -1,     0 }, {    0,    -1 },
+			{    3,    -5 }, {   -9,   -10 }, {  -10,    -9 }, {   17,    23 },
+			{  -64,   -64 }, { -313,   200 }, { 1000, -1000 }, { -30000, 30000 }
+	};
+	
+	/** Generator settings worth pinning down: every world on disk uses one of these, or a mix of them */
+	private static final NeoHellGeneratorSettings[] CONFIGURATIONS = {
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_LEGACY),
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX),
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX).withFastMath(true),
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX).withBiomeBlending(true),
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX).withTerrainQuality(TerrainQuality.COARSE)
+	};
+	
+	/**
+	 * The ways ChunkProviderNeo lays a chunk's blocks out. Every one of them has to come out exactly like the goldens.
+	 */
+	public enum Path {
+		/** generateShape into a ChunkPrimer, as recreateStructures and anything else still using primers does */
+		PRIMER,
+		/** generateShape straight into the chunk's sections, as generateChunk does when nothing was shaped ahead */
+		SECTIONS,
+		/** Shaped ahead by a ShapePipeline into a PalettedChunk, then written into the sections */
+		PIPELINE
+	}
+	
+	private GoldenChunks() {}
+	
+	/**
+	 * Writes fresh goldens, with the code as it is right now, to the file named on the command line.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length!=1) {
+			System.err.println("Usage: GoldenChunks <golden file>");
+			System.exit(1);
+		}
+		TestRegistries.init();
+		try(PrintWriter out = new PrintWriter(args[0], "UTF-8")) {
+			for(String line : HEADER) out.println(line);
+			for(Golden golden : generateAll()) out.println(golden);
+		}
+	}
+	
+	/**
+	 * Loads the goldens checked in alongside the tests.
+	 */
+	public static List<Golden> load() throws IOException {
+		List<Golden> result = new ArrayList<>();
+		InputStream in = GoldenChunks.class.getResourceAsStream(RESOURCE);
+		if (in==null) throw new IOException("Missing "+RESOURCE);
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) continue;
+				result.add(Golden.parse(line));
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Generates fresh goldens for every seed, chunk and configuration, with the code as it is right now. Expects the
+	 * Neo-Hell biomes to be registered already.
+	 */
+	public static List<Golden> generateAll() {
+		List<Golden> result = new ArrayList<>();
+		for(NeoHellGeneratorSettings settings : CONFIGURATIONS) {
+			for(long seed : SEEDS) {
+				for(int[] chunk : CHUNKS) {
+					result.add(new Golden(settings, seed, chunk[0], chunk[1], 0L, 0L));
+				}
+			}
+		}
+		return regenerate(result, Path.PRIMER);
+	}
+	
+	/**
+	 * Generates each golden's chunk again along the given path and returns the results, in the same order.
+	 */
+	public static List<Golden> regenerate(List<Golden> goldens, Path path) {
+		Map<String, TerrainShaper> shapers = new HashMap<>();
+		for(Golden golden : goldens) {
+			shapers.computeIfAbsent(golden.configuration()+" "+golden.seed, (it)->
+				new TerrainShaper(golden.seed, new BiomeProviderNeo(golden.seed), golden.settings));
+		}
+		
+		Map<String, ShapePipeline> pipelines = new HashMap<>();
+		if (path==Path.PIPELINE) {
+			//Queue everything up front, like ShapePrefetcher does, so the workers shape chunks while others are taken
+			for(Golden golden : goldens) {
+				String key = golden.configuration()+" "+golden.seed;
+				pipelines.computeIfAbsent(key, (it)->new ShapePipeline(shapers.get(key), 2, goldens.size()))
+					.prefetch(golden.chunkX, golden.chunkZ);
+			}
+		}
+		
+		List<Golden> result = new ArrayList<>();
+		ChunkPrimer primer = new ChunkPrimer();
+		byte[] biomes = new byte[16*16];
+		try {
+			for(Golden golden : goldens) {
+				String key = golden.configuration()+" "+golden.seed;
+				long blocks;
+				switch(path) {
+				case PRIMER:
+					shapers.get(key).generateShape(golden.chunkX, golden.chunkZ, primer, biomes);
+					blocks = ChunkFingerprint.ofStable(primer);
+					break;
+				case SECTIONS: {
+					ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+					shapers.get(key).generateShape(golden.chunkX, golden.chunkZ, sections, false, biomes);
+					blocks = ChunkFingerprint.ofStable(sections);
+					break;
+				}
+				case PIPELINE: {
+					ShapePipeline pipeline = pipelines.get(key);
+					ShapePipeline.Shaped shaped = pipeline.take(golden.chunkX, golden.chunkZ);
+					if (shaped==null) throw new IllegalStateException(golden.describe()+" wasn't shaped ahead");
+					ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+					shaped.blocks.writeTo(sections, false);
+					System.arraycopy(shaped.biomes, 0, biomes, 0, biomes.length);
+					pipeline.release(shaped);
+					blocks = ChunkFingerprint.ofStable(sections);
+					break;
+				}
+				default:
+					throw new IllegalArgumentException(String.valueOf(path));
+				}
+				result.add(new Golden(golden.settings, golden.seed, golden.chunkX, golden.chunkZ, blocks, ChunkFingerprint.ofBiomes(biomes)));
+			}
+		} finally {
+			for(ShapePipeline pipeline : pipelines.values()) pipeline.shutdown();
+		}
+		return result;
+	}
+	
+	/**
+	 * Regenerates every golden along the given path and describes each one that came out differently. An empty list
+	 * means nothing changed.
+	 */
+	public static List<String> verify(List<Golden> goldens, Path path) {
+		List<String> mismatches = new ArrayList<>();
+		List<Golden> actual = regenerate(goldens, path);
+		for(int i=0; i<goldens.size(); i++) {
+			Golden expected = goldens.get(i);
+			Golden found = actual.get(i);
+			if (expected.blocks!=found.blocks) mismatches.add(expected.describe()+": blocks changed");
+			if (expected.biomes!=found.biomes) mismatches.add(expected.describe()+": biomes changed");
+		}
+		return mismatches;
+	}
+	
+	public static class Golden {
+		final NeoHellGeneratorSettings settings;
+		final long seed;
+		final int chunkX;
+		final int chunkZ;
+		final long blocks;
+		final long biomes;
+		
+		Golden(NeoHellGeneratorSettings settings, long seed, int chunkX, int chunkZ, long blocks, long biomes) {
+			this.settings = settings;
+			this.seed = seed;
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+			this.blocks = blocks;
+			this.biomes = biomes;
+		}
+		
+		/**
+		 * Parses a golden line: version, fast math, seed, chunk X and Z, block and biome hashes, then the names of any
+		 * optional features the chunk was generated with.
+		 */
+		static Golden parse(String line) throws IOException {
+			String[] parts = line.split("\\s+");
+			if (parts.length<7) throw new IOException("Malformed golden: "+line);
+			try {
+				NeoHellGeneratorSettings settings = NeoHellGeneratorSettings.of(Integer.parseInt(parts[0]))
+						.withFastMath(Boolean.parseBoolean(parts[1]));
+				for(int i=7; i<parts.length; i++) {
+					switch(parts[i]) {
+					case "blend":
+						settings.withBiomeBlending(true);
+						break;
+					case "coarse":
+						settings.withTerrainQuality(TerrainQuality.COARSE);
+						break;
+					default:
+						throw new IOException("Unknown option \""+parts[i]+"\" in golden: "+line);
+					}
+				}
+				
+				return new Golden(
+						settings,
+						Long.parseLong(parts[2]),
+						Integer.parseInt(parts[3]),
+						Integer.parseInt(parts[4]),
+						Long.parseUnsignedLong(parts[5], 16),
+						Long.parseUnsignedLong(parts[6], 16));
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed golden: "+line, e);
+			}
+		}
+		
+		/** Gets the settings part of this golden's line, in the same form parse reads them */
+		String configuration() {
+			return settings.getVersion()+" "+settings.isFastMath()+options();
+		}
+		
+		private String options() {
+			return (settings.isBiomeBlending() ? " blend" : "")
+					+(settings.getTerrainQuality()==TerrainQuality.COARSE ? " coarse" : "");
+		}
+		
+		public String describe() {
+			return "chunk "+chunkX+","+chunkZ+" of seed "+seed+" (version "+settings.getVersion()
+					+(settings.isFastMath() ? ", fast math" : "")
+					+(settings.isBiomeBlending() ? ", biome blending" : "")
+					+(settings.getTerrainQuality()==TerrainQuality.COARSE ? ", coarse" : "")+")";
+		}
+		
+		@Override
+		public String toString() {
+			String line = String.format("%d %b %d %d %d %016x %016x", settings.getVersion(), settings.isFastMath(), seed, chunkX, chunkZ, blocks, biomes);
+			return line+options();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that every golden chunk still generates exactly as recorded, along every path ChunkProviderNeo can take to
+ * lay a chunk out. A failure here means existing worlds would get seams.
+ */
+public class GoldenChunksTest {
+	private static List<GoldenChunks.Golden> goldens;
+	
+	@BeforeClass
+	public static void loadGoldens() throws IOException {
+		TestRegistries.init();
+		goldens = GoldenChunks.load();
+	}
+	
+	@Test
+	public void primer() {
+		check(GoldenChunks.Path.PRIMER);
+	}
+	
+	@Test
+	public void sections() {
+		check(GoldenChunks.Path.SECTIONS);
+	}
+	
+	@Test
+	public void pipeline() {
+		check(GoldenChunks.Path.PIPELINE);
+	}
+	
+	private static void check(GoldenChunks.Path path) {
+		List<String> mismatches = GoldenChunks.verify(goldens, path);
+		assertTrue(mismatches.size()+" of "+goldens.size()+" golden chunks changed along the "+path+" path, starting with "
+				+mismatches.subList(0, Math.min(mismatches.size(), 10)), mismatches.isEmpty());
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks that ResettingPool never holds more than its capacity, even with threads releasing at once.
+ */
+public class ResettingPoolTest {
+	private static final int CAPACITY = 4;
+	private static final int THREADS = 8;
+	private static final int RELEASES_PER_THREAD = 1000;
+	
+	/**
+	 * Releases far more objects than the pool holds from several threads at once, then checks that only CAPACITY of
+	 * them were kept and that each was reset.
+	 */
+	@Test
+	public void concurrentReleaseStaysWithinCapacity() throws Exception {
+		AtomicInteger created = new AtomicInteger();
+		ResettingPool<int[]> pool = new ResettingPool<>(()->{
+			created.incrementAndGet();
+			return new int[1];
+		}, (it)->it[0] = 0, CAPACITY);
+		
+		ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> results = new ArrayList<>();
+		try {
+			for(int t=0; t<THREADS; t++) {
+				results.add(threads.submit(()->{
+					start.await();
+					for(int i=0; i<RELEASES_PER_THREAD; i++) pool.release(new int[] { 1 });
+					return null;
+				}));
+			}
+			start.countDown();
+			for(Future<?> result : results) result.get();
+		} finally {
+			threads.shutdown();
+		}
+		
+		for(int i=0; i<CAPACITY; i++) {
+			assertEquals("pooled object "+i+" wasn't reset", 0, pool.acquire()[0]);
+		}
+		assertEquals("objects created before the pool ran dry", 0, created.get());
+		pool.acquire();
+		assertEquals("objects created once the pool ran dry", 1, created.get());
+	}
+	
+	@Test
+	public void acquireHandsBackReleasedObjects() {
+		ResettingPool<int[]> pool = new ResettingPool<>(()->new int[1], (it)->it[0] = 0, CAPACITY);
+		int[] first = pool.acquire();
+		first[0] = 5;
+		pool.release(first);
+		int[] again = pool.acquire();
+		assertSame("a released object should be handed out again", first, again);
+		assertEquals(0, again[0]);
+	}
+}
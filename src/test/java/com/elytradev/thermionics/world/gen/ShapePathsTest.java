@@ -0,0 +1,236 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+/**
+ * Checks that the different ways of getting a chunk's blocks out of a TerrainShaper all come out block for block the
+ * same as plain generateShape into a ChunkPrimer, for every generator configuration the goldens cover.
+ */
+public class ShapePathsTest {
+	private static final long SEED = -4962768465676381896L;
+	
+	/** A square straddling the origin, and a few chunks further out */
+	private static final int[][] CHUNKS = {
+			{ -2, -2 }, { -1, -2 }, { 0, -2 }, { 1, -2 },
+			{ -2, -1 }, { -1, -1 }, { 0, -1 }, { 1, -1 },
+			{ -2,  0 }, { -1,  0 }, { 0,  0 }, { 1,  0 },
+			{ -2,  1 }, { -1,  1 }, { 0,  1 }, { 1,  1 },
+			{ 17, 23 }, { -313, 200 }, { 1000, -1000 }
+	};
+	
+	private static final NeoHellGeneratorSettings[] CONFIGURATIONS = {
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_LEGACY),
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX),
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX).withFastMath(true),
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX).withBiomeBlending(true),
+			NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX).withTerrainQuality(TerrainQuality.COARSE)
+	};
+	
+	@BeforeClass
+	public static void registerBlocks() {
+		TestRegistries.init();
+	}
+	
+	/**
+	 * Shaping straight into block storage sections, both fresh ones and ones still holding an earlier chunk.
+	 */
+	@Test
+	public void sectionsMatchPrimer() {
+		for(NeoHellGeneratorSettings settings : CONFIGURATIONS) {
+			TerrainShaper shaper = new TerrainShaper(SEED, new BiomeProviderNeo(SEED), settings);
+			ExtendedBlockStorage[] reused = filledSections();
+			for(int[] chunk : CHUNKS) {
+				String name = describe(settings, chunk);
+				ChunkPrimer primer = new ChunkPrimer();
+				byte[] expectedBiomes = new byte[16*16];
+				shaper.generateShape(chunk[0], chunk[1], primer, expectedBiomes);
+				char[] expected = statesOf(primer);
+				
+				ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+				byte[] biomes = new byte[16*16];
+				shaper.generateShape(chunk[0], chunk[1], sections, true, biomes);
+				assertArrayEquals(name+" in fresh sections", expected, statesOf(sections));
+				assertArrayEquals(name+" biomes", expectedBiomes, biomes);
+				
+				shaper.generateShape(chunk[0], chunk[1], reused, true, null);
+				assertArrayEquals(name+" written over an earlier chunk's sections", expected, statesOf(reused));
+			}
+		}
+	}
+	
+	/**
+	 * Shaping into sections with the density pass split between a pool's threads.
+	 */
+	@Test
+	public void splitMatchesSequential() {
+		ForkJoinPool columnPool = TerrainShaper.createColumnPool(4);
+		try {
+			for(NeoHellGeneratorSettings settings : CONFIGURATIONS) {
+				if (settings.getTerrainQuality()!=TerrainQuality.EXACT) continue; //Only the culled density pass splits
+				TerrainShaper shaper = new TerrainShaper(SEED, new BiomeProviderNeo(SEED), settings);
+				for(int[] chunk : CHUNKS) {
+					ChunkPrimer expected = new ChunkPrimer();
+					shaper.generateShape(chunk[0], chunk[1], expected);
+					
+					awaitIdle(columnPool);
+					ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+					shaper.generateShape(chunk[0], chunk[1], sections, false, null, columnPool);
+					assertArrayEquals(describe(settings, chunk)+" split between threads", statesOf(expected), statesOf(sections));
+				}
+			}
+			assertTrue("the pool's threads never picked up a piece", columnPool.getStealCount()>0);
+		} finally {
+			columnPool.shutdown();
+		}
+	}
+	
+	/** Waits for the pool's threads to go quiet, since it's only split between them when they are */
+	private static void awaitIdle(ForkJoinPool pool) {
+		pool.awaitQuiescence(1, TimeUnit.SECONDS);
+		for(int i=0; i<100 && pool.getActiveThreadCount()>0; i++) Thread.yield();
+	}
+	
+	/**
+	 * Shaping into pooled PalettedChunks, then writing them out into a primer and into sections. The chunks are reused
+	 * through a ResettingPool, so anything clear leaves behind would show up in the next chunk.
+	 */
+	@Test
+	public void palettedMatchesPrimer() {
+		ResettingPool<PalettedChunk> pool = new ResettingPool<>(PalettedChunk::new, PalettedChunk::clear, 1);
+		for(NeoHellGeneratorSettings settings : CONFIGURATIONS) {
+			TerrainShaper shaper = new TerrainShaper(SEED, new BiomeProviderNeo(SEED), settings);
+			for(int[] chunk : CHUNKS) {
+				String name = describe(settings, chunk);
+				ChunkPrimer expected = new ChunkPrimer();
+				byte[] expectedBiomes = new byte[16*16];
+				shaper.generateShape(chunk[0], chunk[1], expected, expectedBiomes);
+				
+				PalettedChunk paletted = pool.acquire();
+				byte[] biomes = new byte[16*16];
+				shaper.generateShape(chunk[0], chunk[1], paletted, biomes);
+				assertArrayEquals(name+" biomes", expectedBiomes, biomes);
+				
+				ChunkPrimer primer = new ChunkPrimer();
+				paletted.writeTo(primer);
+				assertArrayEquals(name+" written into a primer", statesOf(expected), statesOf(primer));
+				
+				ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+				paletted.writeTo(sections, true);
+				assertArrayEquals(name+" written into sections", statesOf(expected), statesOf(sections));
+				pool.release(paletted);
+			}
+		}
+	}
+	
+	/**
+	 * Loading made-up chunks with just enough distinct states to need each palette width, one after another into the
+	 * same PalettedChunk, so storage left over from a wider chunk gets reused for a narrower one.
+	 */
+	@Test
+	public void palettedLoadRoundTrips() {
+		PalettedChunk paletted = new PalettedChunk();
+		int[][] cases = { { 1, 4 }, { 16, 4 }, { 17, 8 }, { 256, 8 }, { 257, 16 }, { 2, 4 }, { 300, 16 }, { 200, 8 } };
+		char[] blocks = new char[PalettedChunk.VOLUME];
+		for(int[] test : cases) {
+			int states = test[0];
+			for(int i=0; i<blocks.length; i++) {
+				//Runs of a few blocks each, like real terrain, with every state showing up somewhere
+				blocks[i] = (char)(((i / 3) % states) * 16 + 1);
+			}
+			paletted.clear();
+			paletted.load(blocks);
+			assertEquals(states+" states, bits per block", test[1], paletted.getBitsPerBlock());
+			for(int i=0; i<blocks.length; i++) {
+				if (paletted.get(i)!=blocks[i]) fail(states+" states: block "+i+" came back as "+(int)paletted.get(i)+" instead of "+(int)blocks[i]);
+			}
+		}
+	}
+	
+	static String describe(NeoHellGeneratorSettings settings, int[] chunk) {
+		return "chunk "+chunk[0]+","+chunk[1]+" (version "+settings.getVersion()
+				+(settings.isFastMath() ? ", fast math" : "")
+				+(settings.isBiomeBlending() ? ", biome blending" : "")
+				+(settings.getTerrainQuality()==TerrainQuality.COARSE ? ", coarse" : "")+")";
+	}
+	
+	/** Gets a full set of sections with stone everywhere, standing in for a chunk that was there before */
+	private static ExtendedBlockStorage[] filledSections() {
+		ExtendedBlockStorage[] sections = new ExtendedBlockStorage[16];
+		for(int i=0; i<sections.length; i++) {
+			sections[i] = new ExtendedBlockStorage(i << 4, true);
+			for(int x=0; x<16; x++) {
+				for(int z=0; z<16; z++) {
+					for(int y=0; y<16; y++) sections[i].set(x, y, z, Blocks.STONE.getDefaultState());
+				}
+			}
+		}
+		return sections;
+	}
+	
+	/** Gets every block's state ID, in ChunkPrimer order */
+	static char[] statesOf(ChunkPrimer primer) {
+		char[] states = new char[16*16*ChunkProviderNeo.HEIGHT];
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+					states[ChunkPrimerAccess.index(x, y, z)] = (char)Block.getStateId(primer.getBlockState(x, y, z));
+				}
+			}
+		}
+		return states;
+	}
+	
+	/** Gets every block's state ID, in ChunkPrimer order. Missing sections count as air. */
+	static char[] statesOf(ExtendedBlockStorage[] sections) {
+		char[] states = new char[16*16*ChunkProviderNeo.HEIGHT];
+		char air = (char)Block.getStateId(Blocks.AIR.getDefaultState());
+		for(int x=0; x<16; x++) {
+			for(int z=0; z<16; z++) {
+				for(int y=0; y<ChunkProviderNeo.HEIGHT; y++) {
+					ExtendedBlockStorage section = sections[y >> 4];
+					states[ChunkPrimerAccess.index(x, y, z)] = (section==null) ? air : (char)Block.getStateId(section.get(x, y & 15, z));
+				}
+			}
+		}
+		return states;
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+
+import net.minecraft.world.chunk.ChunkPrimer;
+
+/**
+ * Checks that chunks taken out of a ShapePipeline are exactly what shaping them on the spot gives, and that the
+ * pipeline behaves at its edges: when it's full, when chunks turn out to be saved already, when the workers are
+ * busy, and after shutdown.
+ */
+public class ShapePipelineTest {
+	private static final long SEED = 1L;
+	
+	@BeforeClass
+	public static void registerBlocks() {
+		TestRegistries.init();
+	}
+	
+	private static TerrainShaper shaper() {
+		return new TerrainShaper(SEED, new BiomeProviderNeo(SEED), NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX));
+	}
+	
+	@Test
+	public void takeMatchesShapingOnTheSpot() {
+		TerrainShaper shaper = shaper();
+		ShapePipeline pipeline = new ShapePipeline(shaper, 2, 64);
+		try {
+			for(int z=-3; z<3; z++) {
+				for(int x=-3; x<3; x++) pipeline.prefetch(x, z);
+			}
+			//Take them in a different order from the one they were queued in
+			for(int x=2; x>=-3; x--) {
+				for(int z=2; z>=-3; z--) {
+					ChunkPrimer expected = new ChunkPrimer();
+					byte[] expectedBiomes = new byte[16*16];
+					shaper.generateShape(x, z, expected, expectedBiomes);
+					
+					ShapePipeline.Shaped shaped = pipeline.take(x, z);
+					assertNotNull("chunk "+x+","+z+" should have been queued", shaped);
+					ChunkPrimer primer = new ChunkPrimer();
+					shaped.blocks.writeTo(primer);
+					assertArrayEquals("chunk "+x+","+z, ShapePathsTest.statesOf(expected), ShapePathsTest.statesOf(primer));
+					assertArrayEquals("chunk "+x+","+z+" biomes", expectedBiomes, shaped.biomes);
+					pipeline.release(shaped);
+				}
+			}
+			//Whichever ones the workers hadn't got to yet were shaped by take itself
+			assertEquals(36, pipeline.getHits() + pipeline.getMisses());
+			long misses = pipeline.getMisses();
+			assertNull("a chunk that was never queued", pipeline.take(100, 100));
+			assertEquals(misses+1, pipeline.getMisses());
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+	
+	@Test
+	public void fullPipelineDropsTheOldest() {
+		ShapePipeline pipeline = new ShapePipeline(shaper(), 1, 4);
+		try {
+			for(int x=0; x<6; x++) pipeline.prefetch(x, 0);
+			assertEquals(4, pipeline.getPendingCount());
+			assertEquals(2, pipeline.getEvictions());
+			assertNull("the oldest chunk should have been dropped", pipeline.take(0, 0));
+			assertNotNull("the newest chunk should still be there", pipeline.take(5, 0));
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+	
+	@Test
+	public void savedChunksAreLeftAlone() throws InterruptedException {
+		ShapePipeline pipeline = new ShapePipeline(shaper(), 1, 16);
+		try {
+			for(int x=0; x<8; x++) pipeline.prefetch(x, 0, (chunkX, chunkZ)->(chunkX & 1)==0);
+			//Wait for the worker to get through them all; the saved ones take themselves back out as it does
+			for(int i=0; i<200 && pipeline.getPendingCount()>4; i++) Thread.sleep(50);
+			assertEquals(4, pipeline.getPendingCount());
+			assertNull("chunk 2,0 is saved, so it shouldn't be shaped", pipeline.take(2, 0));
+			assertNotNull("chunk 3,0 isn't saved", pipeline.take(3, 0));
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+	
+	@Test
+	public void takeShapesQueuedChunksItself() throws InterruptedException {
+		TerrainShaper shaper = shaper();
+		ShapePipeline pipeline = new ShapePipeline(shaper, 1, 16);
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			//Tie the only worker up on the first chunk, so the rest of the queue never moves
+			pipeline.prefetch(0, 0, (chunkX, chunkZ)->{
+				blocked.countDown();
+				try {
+					release.await(30, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return false;
+			});
+			assertTrue("the worker should have started on chunk 0,0", blocked.await(30, TimeUnit.SECONDS));
+			for(int x=1; x<8; x++) pipeline.prefetch(x, 0);
+			
+			ShapePipeline.Shaped shaped = pipeline.take(7, 0);
+			assertEquals("take shouldn't have waited for the worker", 1, release.getCount());
+			assertNotNull("chunk 7,0 was queued", shaped);
+			ChunkPrimer expected = new ChunkPrimer();
+			shaper.generateShape(7, 0, expected, new byte[16*16]);
+			ChunkPrimer primer = new ChunkPrimer();
+			shaped.blocks.writeTo(primer);
+			assertArrayEquals("chunk 7,0", ShapePathsTest.statesOf(expected), ShapePathsTest.statesOf(primer));
+			pipeline.release(shaped);
+			assertEquals("a chunk shaped by take counts as shaped on the spot", 1, pipeline.getMisses());
+			assertEquals(0, pipeline.getHits());
+		} finally {
+			release.countDown();
+			pipeline.shutdown();
+		}
+	}
+	
+	@Test
+	public void prefetchAfterShutdownIsIgnored() {
+		ShapePipeline pipeline = new ShapePipeline(shaper(), 1, 4);
+		pipeline.shutdown();
+		pipeline.prefetch(0, 0);
+		assertEquals(0, pipeline.getPendingCount());
+		assertNull(pipeline.take(0, 0));
+	}
+}
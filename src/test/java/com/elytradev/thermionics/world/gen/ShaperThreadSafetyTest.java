@@ -0,0 +1,115 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.elytradev.thermionics.world.gen.biome.BiomeProviderNeo;
+
+import net.minecraft.world.chunk.ChunkPrimer;
+
+/**
+ * Shapes a square of chunks around the origin on one thread, then shapes them all again from several threads sharing
+ * one TerrainShaper, and checks every chunk came out the same.
+ */
+public class ShaperThreadSafetyTest {
+	private static final long SEED = 8675309L;
+	private static final int CHUNKS = 64;
+	private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+	
+	@BeforeClass
+	public static void registerBlocks() {
+		TestRegistries.init();
+	}
+	
+	@Test
+	public void splitMix() throws Exception {
+		check(NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX));
+	}
+	
+	@Test
+	public void legacy() throws Exception {
+		check(NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_LEGACY));
+	}
+	
+	@Test
+	public void blendedAndCoarse() throws Exception {
+		check(NeoHellGeneratorSettings.of(NeoHellGeneratorSettings.VERSION_SPLITMIX).withBiomeBlending(true).withTerrainQuality(TerrainQuality.COARSE));
+	}
+	
+	private static void check(NeoHellGeneratorSettings settings) throws Exception {
+		TerrainShaper shaper = new TerrainShaper(SEED, new BiomeProviderNeo(SEED), settings);
+		int side = (int)Math.ceil(Math.sqrt(CHUNKS));
+		int[] chunkX = new int[CHUNKS];
+		int[] chunkZ = new int[CHUNKS];
+		for(int i=0; i<CHUNKS; i++) {
+			chunkX[i] = (i % side) - side/2;
+			chunkZ[i] = (i / side) - side/2;
+		}
+		
+		ResettingPool<ChunkPrimer> primers = ResettingPool.ofPrimers(THREADS);
+		long[] expected = new long[CHUNKS];
+		for(int i=0; i<CHUNKS; i++) {
+			ChunkPrimer primer = primers.acquire();
+			shaper.generateShape(chunkX[i], chunkZ[i], primer);
+			expected[i] = ChunkFingerprint.of(primer);
+			primers.release(primer);
+		}
+		
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		List<Future<Integer>> results = new ArrayList<>();
+		try {
+			for(int t=0; t<THREADS; t++) {
+				int offset = t * CHUNKS / THREADS;
+				results.add(pool.submit(()->{
+					int mismatches = 0;
+					for(int n=0; n<CHUNKS; n++) {
+						//Start every thread somewhere different so they're working on different chunks at once
+						int i = (n + offset) % CHUNKS;
+						ChunkPrimer primer = primers.acquire();
+						shaper.generateShape(chunkX[i], chunkZ[i], primer);
+						if (ChunkFingerprint.of(primer)!=expected[i]) mismatches++;
+						primers.release(primer);
+					}
+					return mismatches;
+				}));
+			}
+			
+			int mismatches = 0;
+			for(Future<Integer> result : results) mismatches += result.get();
+			assertEquals("parallel chunks that didn't match single-threaded generation", 0, mismatches);
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
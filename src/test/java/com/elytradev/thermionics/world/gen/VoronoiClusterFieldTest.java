@@ -0,0 +1,162 @@
+/**
+ * MIT License
+ *
+ * Copyright (c) 2017 Isaac Ellingson (Falkreon) and contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.elytradev.thermionics.world.gen;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that VoronoiClusterField's grid index picks exactly the cell-type a plain scan of every registered cell
+ * would: the nearest by Manhattan distance, with ties going to whichever was registered first. Biomes on existing
+ * worlds depend on that, so this uses far more cells than the built-in biomes, with plenty of exact ties, and keeps
+ * checking as cells are registered, replaced and unregistered.
+ */
+public class VoronoiClusterFieldTest {
+	private static final long SEED = 42L;
+	/** Matches VoronoiClusterField.INDEX_SIZE, so that points land exactly on the index's grid-square edges */
+	private static final int GRID = 32;
+	private static final int RANDOM_POINTS = 20000;
+	
+	@Test
+	public void cellForMatchesLinearScan() {
+		Random random = new Random(SEED);
+		VoronoiClusterField<String> field = new VoronoiClusterField<>(SEED, 16*9);
+		Model model = new Model();
+		int names = 0;
+		
+		//Scattered cells, a few of them outside the indexed 0..1 square
+		for(int i=0; i<120; i++) {
+			float a = (i%20==0) ? random.nextFloat()*2 - 0.5f : random.nextFloat();
+			float b = (i%20==0) ? random.nextFloat()*2 - 0.5f : random.nextFloat();
+			register(field, model, "cell"+(names++), a, b);
+		}
+		//Cells on the grid, which tie exactly with each other all over the place
+		for(int i=0; i<60; i++) {
+			register(field, model, "grid"+(names++), random.nextInt(GRID*2+1)/(float)(GRID*2), random.nextInt(GRID*2+1)/(float)(GRID*2));
+		}
+		//Different cells registered at the same point, where the first should always win
+		for(int i=0; i<20; i++) {
+			Model.Cell existing = model.cells.get(random.nextInt(model.cells.size()));
+			register(field, model, "duplicate"+(names++), existing.a, existing.b);
+		}
+		//A cell and four more at the same Manhattan distance from a point, in each direction
+		register(field, model, "center"+(names++), 0.5f, 0.5f);
+		register(field, model, "east"+(names++), 0.625f, 0.5f);
+		register(field, model, "west"+(names++), 0.375f, 0.5f);
+		register(field, model, "north"+(names++), 0.5f, 0.375f);
+		register(field, model, "south"+(names++), 0.5f, 0.625f);
+		check(field, model, random, "after registering");
+		
+		for(int i=0; i<30; i++) {
+			String old = model.cells.get(random.nextInt(model.cells.size())).name;
+			String replacement = "replacement"+(names++);
+			field.replaceCell(old, replacement);
+			model.replace(old, replacement);
+		}
+		check(field, model, random, "after replacing");
+		
+		for(int i=0; i<40; i++) {
+			String name = model.cells.get(random.nextInt(model.cells.size())).name;
+			field.unregisterCell(name);
+			model.unregister(name);
+		}
+		check(field, model, random, "after unregistering");
+		
+		for(int i=0; i<20; i++) {
+			register(field, model, "late"+(names++), random.nextInt(GRID+1)/(float)GRID, random.nextInt(GRID+1)/(float)GRID);
+		}
+		check(field, model, random, "after registering more");
+	}
+	
+	private static void register(VoronoiClusterField<String> field, Model model, String name, float a, float b) {
+		field.registerCell(name, a, b);
+		model.cells.add(new Model.Cell(name, a, b));
+	}
+	
+	private static void check(VoronoiClusterField<String> field, Model model, Random random, String when) {
+		List<double[]> points = new ArrayList<>();
+		//Every corner and edge midpoint of the index grid, and a little past the square on every side
+		for(int ib=-2; ib<=GRID*2+2; ib++) {
+			for(int ia=-2; ia<=GRID*2+2; ia++) points.add(new double[] { ia/(double)(GRID*2), ib/(double)(GRID*2) });
+		}
+		//Exactly on the registered cells, which is where ties between duplicates show up
+		for(Model.Cell cell : model.cells) points.add(new double[] { cell.a, cell.b });
+		//Random points, some of them well outside 0..1
+		for(int i=0; i<RANDOM_POINTS; i++) {
+			double spread = (i%10==0) ? 3 : 1;
+			double offset = (i%10==0) ? -1 : 0;
+			points.add(new double[] { random.nextDouble()*spread + offset, random.nextDouble()*spread + offset });
+		}
+		
+		for(double[] point : points) {
+			assertEquals(when+", at "+point[0]+", "+point[1], model.nearest(point[0], point[1]), field.cellFor(point[0], point[1]));
+		}
+	}
+	
+	/** The registered cells as a plain list, in registration order, with the original linear scan over them */
+	private static class Model {
+		final List<Cell> cells = new ArrayList<>();
+		
+		String nearest(double a, double b) {
+			double bestDistance = Double.MAX_VALUE;
+			Cell best = null;
+			for(Cell cell : cells) {
+				double distance = Math.abs(cell.a-a) + Math.abs(cell.b-b);
+				if (best==null || distance<bestDistance) {
+					best = cell;
+					bestDistance = distance;
+				}
+			}
+			return (best==null) ? null : best.name;
+		}
+		
+		void replace(String old, String replacement) {
+			for(int i=0; i<cells.size(); i++) {
+				Cell cell = cells.get(i);
+				if (cell.name.equals(old)) cells.set(i, new Cell(replacement, cell.a, cell.b));
+			}
+		}
+		
+		void unregister(String name) {
+			cells.removeIf((it)->it.name.equals(name));
+		}
+		
+		static class Cell {
+			final String name;
+			final float a;
+			final float b;
+			
+			Cell(String name, float a, float b) {
+				this.name = name;
+				this.a = a;
+				this.b = b;
+			}
+		}
+	}
+}